@@ -0,0 +1,228 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Micro-benchmarks for the CourseDatabase hot paths, run with {@code ./gradlew benchmark}.
+ *
+ * Each benchmark runs against a freshly generated database, first for the warmup iterations and then for
+ * the measured iterations, and reports throughput plus p50/p99 latency per operation. Options are passed
+ * as Gradle properties:
+ * <pre>
+ *   -Pbenchmark.scale=20000        number of students (courses and enrollments scale with it)
+ *   -Pbenchmark.storage=memory,disk  which SQLite storage to benchmark
+ *   -Pbenchmark.warmup=3           warmup iterations
+ *   -Pbenchmark.iterations=5       measured iterations
+ *   -Pbenchmark.filter=getStudent  only run benchmarks whose name contains this text
+ * </pre>
+ */
+public class CourseDatabaseBenchmark {
+    private static final String[] SUBJECTS = {"CS", "MATH", "PHYS", "CHEM", "ECON", "HIST", "ENGL", "STS"};
+    private static final int[] FAN_OUTS = {10, 100, 1000};
+    private static final int OPERATIONS_PER_ITERATION = 2_000;
+    private static final Course FAN_OUT_COURSE = new Course(9_999, "BENCH", 1, 1, "TR 08:00-09:15");
+
+    @FunctionalInterface
+    private interface Operation {
+        void run(int invocation) throws SQLException;
+    }
+
+    private final int scale;
+    private final int warmupIterations;
+    private final int measuredIterations;
+    private final String filter;
+
+    private CourseDatabaseBenchmark(int scale, int warmupIterations, int measuredIterations, String filter) {
+        this.scale = scale;
+        this.warmupIterations = warmupIterations;
+        this.measuredIterations = measuredIterations;
+        this.filter = filter;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int scale = Integer.parseInt(argument(args, 0, "20000"));
+        String[] storages = argument(args, 1, "memory,disk").split(",");
+        int warmup = Integer.parseInt(argument(args, 2, "3"));
+        int iterations = Integer.parseInt(argument(args, 3, "5"));
+        String filter = argument(args, 4, "");
+
+        CourseDatabaseBenchmark benchmark = new CourseDatabaseBenchmark(scale, warmup, iterations, filter);
+        System.out.printf("%-8s %-36s %14s %12s %12s%n", "storage", "benchmark", "ops/s", "p50 (us)", "p99 (us)");
+        for (String storage : storages) {
+            benchmark.runAll(storage.trim());
+        }
+    }
+
+    private static String argument(String[] args, int index, String defaultValue) {
+        return args.length > index && !args[index].isBlank() ? args[index] : defaultValue;
+    }
+
+    private void runAll(String storage) throws Exception {
+        run(storage, "addNewStudent (single row)", () -> fixture(storage, 0), database -> {
+            int firstId = database.getNextStudentID();
+            return invocation -> {
+                database.addNewStudent(student(firstId + invocation));
+                database.commit();
+            };
+        });
+        run(storage, "upsertStudents (batch of 500)", () -> fixture(storage, 0), database -> {
+            int firstId = database.getNextStudentID();
+            return invocation -> {
+                List<Student> chunk = new ArrayList<>(500);
+                for (int i = 0; i < 500; i++) {
+                    chunk.add(student(firstId + invocation * 500 + i));
+                }
+                database.upsertStudents(chunk);
+                database.commit();
+            };
+        });
+        run(storage, "getStudent (point lookup)", () -> fixture(storage, scale), database -> {
+            Random random = new Random(42);
+            return invocation -> database.getStudent(1 + random.nextInt(scale));
+        });
+        run(storage, "getStudents (full scan)", () -> fixture(storage, scale), database ->
+                invocation -> database.getStudents());
+        for (int fanOut : FAN_OUTS) {
+            if (fanOut > scale) {
+                continue;
+            }
+            run(storage, "getStudentsByCourse (fan-out " + fanOut + ")", () -> fanOutFixture(storage, fanOut),
+                    database -> invocation -> database.getStudentsByCourse(FAN_OUT_COURSE));
+        }
+        run(storage, "getNextStudentID (growing table)", () -> fixture(storage, scale), database ->
+                invocation -> {
+                    database.addNewStudent(student(database.getNextStudentID()));
+                });
+    }
+
+    @FunctionalInterface
+    private interface FixtureFactory {
+        Fixture create() throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface OperationFactory {
+        Operation create(CourseDatabase database) throws SQLException;
+    }
+
+    private void run(String storage, String name, FixtureFactory fixtureFactory, OperationFactory operationFactory)
+            throws Exception {
+        if (!name.contains(filter)) {
+            return;
+        }
+        long[] latencies = new long[measuredIterations * OPERATIONS_PER_ITERATION];
+        long measuredNanos = 0;
+        for (int iteration = 0; iteration < warmupIterations + measuredIterations; iteration++) {
+            try (Fixture fixture = fixtureFactory.create()) {
+                Operation operation = operationFactory.create(fixture.database());
+                boolean measured = iteration >= warmupIterations;
+                int offset = (iteration - warmupIterations) * OPERATIONS_PER_ITERATION;
+                long iterationStart = System.nanoTime();
+                for (int invocation = 0; invocation < OPERATIONS_PER_ITERATION; invocation++) {
+                    long start = System.nanoTime();
+                    operation.run(invocation);
+                    if (measured) {
+                        latencies[offset + invocation] = System.nanoTime() - start;
+                    }
+                }
+                if (measured) {
+                    measuredNanos += System.nanoTime() - iterationStart;
+                }
+            }
+        }
+        Arrays.sort(latencies);
+        double opsPerSecond = latencies.length / (measuredNanos / 1e9);
+        System.out.printf("%-8s %-36s %14.1f %12.1f %12.1f%n", storage, name, opsPerSecond,
+                          percentile(latencies, 0.50) / 1e3, percentile(latencies, 0.99) / 1e3);
+    }
+
+    private static long percentile(long[] sortedLatencies, double percentile) {
+        return sortedLatencies[(int) Math.min(sortedLatencies.length - 1, sortedLatencies.length * percentile)];
+    }
+
+    private record Fixture(CourseDatabase database, Path file) implements AutoCloseable {
+        @Override
+        public void close() throws SQLException, IOException {
+            database.rollback();
+            database.disconnect();
+            if (file != null) {
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(Path.of(file + "-wal"));
+                Files.deleteIfExists(Path.of(file + "-shm"));
+            }
+        }
+    }
+
+    /**
+     * A database holding students students, students / 20 courses and three enrollments per student
+     */
+    private Fixture fixture(String storage, int students) throws Exception {
+        Fixture fixture = openFixture(storage);
+        CourseDatabase database = fixture.database();
+        int courses = Math.max(1, students / 20);
+        List<Student> studentRows = new ArrayList<>(students);
+        for (int id = 1; id <= students; id++) {
+            studentRows.add(student(id));
+        }
+        List<Course> courseRows = new ArrayList<>(courses);
+        for (int i = 0; i < courses; i++) {
+            courseRows.add(course(i));
+        }
+        List<Enrollment> enrollments = new ArrayList<>(students * 3);
+        Random random = new Random(7);
+        for (int id = 1; id <= students; id++) {
+            int first = random.nextInt(courses);
+            for (int k = 0; k < Math.min(3, courses); k++) {
+                enrollments.add(new Enrollment(id, course((first + k) % courses).getCrn()));
+            }
+        }
+        database.upsertStudents(studentRows);
+        database.upsertCourses(courseRows);
+        database.addEnrollments(enrollments);
+        database.commit();
+        return fixture;
+    }
+
+    /**
+     * The standard fixture, plus a course with exactly fanOut students enrolled
+     */
+    private Fixture fanOutFixture(String storage, int fanOut) throws Exception {
+        Fixture fixture = fixture(storage, scale);
+        CourseDatabase database = fixture.database();
+        database.upsertCourse(FAN_OUT_COURSE);
+        List<Enrollment> enrollments = new ArrayList<>(fanOut);
+        for (int id = 1; id <= fanOut; id++) {
+            enrollments.add(new Enrollment(id, FAN_OUT_COURSE.getCrn()));
+        }
+        database.addEnrollments(enrollments);
+        database.commit();
+        return fixture;
+    }
+
+    private static Fixture openFixture(String storage) throws Exception {
+        Path file = switch (storage) {
+            case "memory" -> null;
+            case "disk" -> Files.createTempFile("courses-benchmark", ".db");
+            default -> throw new IllegalArgumentException("Unknown storage " + storage + ", use memory or disk");
+        };
+        CourseDatabase database = new CourseDatabase(file == null ? ":memory:" : file.toString());
+        database.connect();
+        database.createTablesIfNeeded();
+        database.commit();
+        return new Fixture(database, file);
+    }
+
+    private static Student student(int id) {
+        return new Student(id, "First" + id, "Last" + id, "cid" + id);
+    }
+
+    private static Course course(int index) {
+        return new Course(10_000 + index, SUBJECTS[index % SUBJECTS.length], 1000 + index / SUBJECTS.length,
+                          1, "MWF 10:00-10:50");
+    }
+}
@@ -0,0 +1,184 @@
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking facade over a connected {@link CourseDatabase}. Every operation returns a CompletableFuture.
+ *
+ * Writes are funneled through a single writer thread in submission order, and each write is committed (or
+ * rolled back on failure) on its own. When the database is in pooled mode, reads run concurrently on
+ * virtual threads (platform threads before Java 21) over the read connection pool; otherwise they queue
+ * behind the writes on the writer thread.
+ *
+ * Both queues are bounded - once maxPendingReads reads or maxPendingWrites writes are outstanding, new
+ * operations fail immediately with a {@link RejectedExecutionException} instead of piling up in memory.
+ */
+public class AsyncCourseDatabase implements AutoCloseable {
+    @FunctionalInterface
+    private interface SqlCallable<T> {
+        T call() throws SQLException;
+    }
+
+    private final CourseDatabase courseDatabase;
+    private final ThreadPoolExecutor writer;
+    private final ExecutorService readers;
+    private final Semaphore readPermits;
+
+    /**
+     * @param courseDatabase a connected database, not to be used directly while this facade is open
+     * @param maxPendingReads the most reads that may be queued or running at once
+     * @param maxPendingWrites the most writes that may be queued behind the running one
+     */
+    public AsyncCourseDatabase(CourseDatabase courseDatabase, int maxPendingReads, int maxPendingWrites) {
+        if (maxPendingReads < 1 || maxPendingWrites < 1) {
+            throw new IllegalArgumentException("Queue depths must be at least 1");
+        }
+        this.courseDatabase = courseDatabase;
+        writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                                        new ArrayBlockingQueue<>(maxPendingWrites), runnable -> {
+            Thread thread = new Thread(runnable, "course-database-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        readers = courseDatabase.isPooled() ? newReadExecutor() : null;
+        readPermits = new Semaphore(maxPendingReads);
+    }
+
+    /**
+     * Virtual threads when the runtime has them (Java 21+), otherwise daemon platform threads - the read
+     * permits bound how many run at once either way
+     */
+    private static ExecutorService newReadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "course-database-reader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public CompletableFuture<Optional<Student>> getStudent(int studentID) {
+        return read(() -> courseDatabase.getStudent(studentID));
+    }
+
+    public CompletableFuture<List<Student>> getStudents() {
+        return read(courseDatabase::getStudents);
+    }
+
+    public CompletableFuture<List<Student>> getStudentsByCourse(Course course) {
+        return read(() -> courseDatabase.getStudentsByCourse(course));
+    }
+
+    public CompletableFuture<Optional<Course>> getCourse(int crn) {
+        return read(() -> courseDatabase.getCourse(crn));
+    }
+
+    public CompletableFuture<Void> upsertStudent(Student student) {
+        return write(() -> {
+            courseDatabase.upsertStudent(student);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> upsertCourse(Course course) {
+        return write(() -> {
+            courseDatabase.upsertCourse(course);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> addEnrollment(Student student, Course course) {
+        return write(() -> {
+            courseDatabase.addEnrollment(student, course);
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<T> read(SqlCallable<T> operation) {
+        if (readers == null) {
+            return write(operation);
+        }
+        if (!readPermits.tryAcquire()) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Too many pending reads"));
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            readers.execute(() -> {
+                try {
+                    future.complete(operation.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    readPermits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            readPermits.release();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private <T> CompletableFuture<T> write(SqlCallable<T> operation) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            writer.execute(() -> {
+                try {
+                    T result = operation.call();
+                    courseDatabase.commit();
+                    future.complete(result);
+                } catch (Throwable e) {
+                    try {
+                        courseDatabase.rollback();
+                    } catch (SQLException | RuntimeException rollbackFailure) {
+                        // e.g. IllegalStateException once disconnected - the future must still complete
+                        e.addSuppressed(rollbackFailure);
+                    }
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new RejectedExecutionException("Too many pending writes", e));
+        }
+        return future;
+    }
+
+    /**
+     * @return the number of writes waiting behind the running one
+     */
+    public int getPendingWrites() {
+        return writer.getQueue().size();
+    }
+
+    /**
+     * Stops accepting operations and waits for those already submitted. The database stays connected.
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        if (readers != null) {
+            readers.shutdown();
+        }
+        try {
+            if (readers != null) {
+                readers.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
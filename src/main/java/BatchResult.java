@@ -0,0 +1,49 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a bulk write - how many rows were written and which rows were rejected
+ * @param <T> the type of row submitted
+ */
+public class BatchResult<T> {
+    /**
+     * A rejected row
+     * @param index position of the row in the submitted collection
+     * @param item the rejected row
+     * @param cause the constraint violation reported by SQLite
+     */
+    public record Conflict<T>(int index, T item, SQLException cause) { }
+
+    private int succeeded;
+    private final List<Conflict<T>> conflicts = new ArrayList<>();
+
+    void addSucceeded(int count) {
+        succeeded += count;
+    }
+
+    void addConflict(int index, T item, SQLException cause) {
+        conflicts.add(new Conflict<>(index, item, cause));
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public List<Conflict<T>> getConflicts() {
+        return Collections.unmodifiableList(conflicts);
+    }
+
+    public boolean hasConflicts() {
+        return !conflicts.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+               "succeeded=" + succeeded +
+               ", conflicts=" + conflicts +
+               '}';
+    }
+}
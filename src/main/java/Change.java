@@ -0,0 +1,40 @@
+/**
+ * One entry of the change feed - see {@link CourseDatabase#changesSince(long)}
+ * @param sequence position in the feed, increasing with every change and never reused
+ * @param table the table that changed
+ * @param operation what happened to the row
+ * @param studentId the changed student, or the student of the changed enrollment - 0 for course changes
+ * @param crn the changed course, or the course of the changed enrollment - 0 for student changes
+ */
+public record Change(long sequence, Table table, Operation operation, int studentId, int crn) {
+    public enum Table {
+        STUDENTS("Students"),
+        COURSES("Courses"),
+        ENROLLMENTS("Enrollments");
+
+        private final String tableName;
+
+        Table(String tableName) {
+            this.tableName = tableName;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        static Table fromTableName(String tableName) {
+            for (Table table : values()) {
+                if (table.tableName.equals(tableName)) {
+                    return table;
+                }
+            }
+            throw new IllegalArgumentException("Unknown table in change log: " + tableName);
+        }
+    }
+
+    public enum Operation {
+        INSERT,
+        UPDATE,
+        DELETE
+    }
+}
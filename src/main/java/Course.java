@@ -3,20 +3,36 @@ import java.util.Collections;
 import java.util.List;
 
 public class Course {
+    /**
+     * Capacity of a course without a seat limit
+     */
+    public static final int UNLIMITED = -1;
+
     private final int crn;
     private final String subject;
     private final int courseNumber;
     private final int sectionNumber;
     private String meetingTime;
+    private final int capacity;
 
     private final List<Student> students;
 
     public Course(int crn, String subject, int courseNumber, int sectionNumber, String meetingTime) {
+        this(crn, subject, courseNumber, sectionNumber, meetingTime, UNLIMITED);
+    }
+
+    /**
+     * @param capacity the number of seats, or {@link #UNLIMITED}
+     * @throws IllegalArgumentException if the capacity is negative and not UNLIMITED
+     */
+    public Course(int crn, String subject, int courseNumber, int sectionNumber, String meetingTime, int capacity) {
+        checkCapacity(capacity);
         this.crn = crn;
         this.subject = subject;
         this.courseNumber = courseNumber;
         this.sectionNumber = sectionNumber;
         this.meetingTime = meetingTime;
+        this.capacity = capacity;
         students = new ArrayList<Student>();
     }
 
@@ -44,6 +60,19 @@ public class Course {
         this.meetingTime = meetingTime;
     }
 
+    static void checkCapacity(int capacity) {
+        if (capacity < UNLIMITED) {
+            throw new IllegalArgumentException("Capacity must be at least 0, or UNLIMITED, but was " + capacity);
+        }
+    }
+
+    /**
+     * @return the number of seats, or {@link #UNLIMITED}
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
     public List<Student> getStudents() {
         return Collections.unmodifiableList(students);
     }
@@ -64,6 +93,7 @@ public class Course {
                ", courseNumber=" + courseNumber +
                ", sectionNumber=" + sectionNumber +
                ", meetingTime='" + meetingTime + '\'' +
+               ", capacity=" + capacity +
                ", students=" + students +
                '}';
     }
@@ -73,7 +103,7 @@ public class Course {
         if (this == o) return true;
         if (!(o instanceof Course course)) return false;
 
-        return crn == course.crn && courseNumber == course.courseNumber && sectionNumber == course.sectionNumber && subject.equals(course.subject) && meetingTime.equals(course.meetingTime);
+        return crn == course.crn && courseNumber == course.courseNumber && sectionNumber == course.sectionNumber && subject.equals(course.subject) && meetingTime.equals(course.meetingTime) && capacity == course.capacity;
     }
 
     @Override
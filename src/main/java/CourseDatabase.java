@@ -1,61 +1,426 @@
+import org.sqlite.SQLiteConfig;
+
 import java.sql.*;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class CourseDatabase {
     private static final String DEFAULT_SQLITE_FILE = "courses_inclass.db";
+    private static final int DEFAULT_BATCH_CHUNK_SIZE = 500;
+    private static final int SQLITE_CONSTRAINT = 19;
+    // PRAGMAs that only affect the connection they're set on, and so also apply to pooled readers
+    private static final Set<String> CONNECTION_PRAGMAS = Set.of("cache_size", "mmap_size", "temp_store");
+
+    // every query issued by this class, see explainQueryPlans - must be declared before the queries
+    private static final List<NamedQuery> QUERIES = new ArrayList<>();
+
+    private record NamedQuery(String name, String sql, boolean fullScanExpected) { }
+
+    private static NamedQuery query(String name, boolean fullScanExpected, String sql) {
+        NamedQuery query = new NamedQuery(name, sql, fullScanExpected);
+        QUERIES.add(query);
+        return query;
+    }
 
     private final String databaseFilename;
+    private final CourseDatabaseConfig config;
     private Connection connection;
+    private StatementCache statementCache;
+    private ReadConnectionPool readPool;
+    private final EntityCache<Integer, Student> studentCache;
+    private final EntityCache<Integer, Course> courseCache;
+    // parsed Courses.MeetingTime by CRN, for addEnrollmentCheckingConflicts
+    private final Map<Integer, MeetingTime> meetingTimes = new ConcurrentHashMap<>();
+    private final SeatCounters seatCounters = new SeatCounters(this::selectSeats);
+    private final StudentIdAllocator studentIdAllocator = new StudentIdAllocator(this::selectNextStudentID);
+    private SqliteProfile activeProfile;
+    // loaded on first use, then kept in sync with this connection's enrollment writes
+    private EnrollmentIndex enrollmentIndex;
+    private boolean enrollmentIndexLoadedInTransaction;
+    // null when instrumentation is disabled
+    private final CourseDatabaseMetrics metrics;
+    private final long slowQueryNanos;
 
     public CourseDatabase() {
         this(DEFAULT_SQLITE_FILE);
     }
 
     public CourseDatabase(String databaseFilename) {
+        this(databaseFilename, CourseDatabaseConfig.DEFAULT);
+    }
+
+    /**
+     * @param databaseFilename the SQLite file to open
+     * @param statementCacheSize the maximum number of compiled statements kept per connection
+     */
+    public CourseDatabase(String databaseFilename, int statementCacheSize) {
+        this(databaseFilename, CourseDatabaseConfig.builder().statementCacheSize(statementCacheSize).build());
+    }
+
+    public CourseDatabase(String databaseFilename, CourseDatabaseConfig config) {
         this.databaseFilename = databaseFilename;
+        this.config = config;
+        metrics = config.getMetrics();
+        slowQueryNanos = config.getSlowQueryThreshold().toNanos();
+        studentCache = config.getStudentCacheSize() == 0 ? null
+                : new EntityCache<>(config.getStudentCacheSize(), config.getEntityCacheTtl(), CourseDatabase::copyOf);
+        courseCache = config.getCourseCacheSize() == 0 ? null
+                : new EntityCache<>(config.getCourseCacheSize(), config.getEntityCacheTtl(), CourseDatabase::copyOf);
     }
 
     public void connect() throws SQLException {
+        if (metrics == null) {
+            connectUntimed();
+            return;
+        }
+        timedAction("connect", null, () -> connectUntimed());
+    }
+
+    private void connectUntimed() throws SQLException {
         if (connection != null && !connection.isClosed()) {
             throw new IllegalStateException("The database connection is already active");
         }
-        connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFilename);
+        if (config.isPooled() && isInMemory()) {
+            throw new IllegalStateException("Pooled mode requires a database file, not an in-memory database");
+        }
+        if (config.isReadOnly()) {
+            SQLiteConfig readOnly = new SQLiteConfig();
+            readOnly.setReadOnly(true);
+            connection = DriverManager.getConnection(getUrl(), readOnly.toProperties());
+        } else {
+            connection = DriverManager.getConnection(getUrl());
+        }
         PreparedStatement preparedStatement = connection.prepareStatement("PRAGMA foreign_keys=ON");
         preparedStatement.execute();
+        preparedStatement.close();
+        // journal_mode can't be changed inside a transaction, so this has to precede setAutoCommit(false)
+        applyPragmas(profilePragmas(config.getProfile()));
+        activeProfile = config.getProfile();
+        if (config.isPooled()) {
+            enableWriteAheadLog();
+        }
 
         connection.setAutoCommit(false);
+        statementCache = new StatementCache(connection, config.getStatementCacheSize());
+        studentIdAllocator.reset();
+        if (config.isPooled()) {
+            Map<String, String> readerPragmas = new LinkedHashMap<>(config.getProfile().getPragmas());
+            readerPragmas.keySet().retainAll(CONNECTION_PRAGMAS);
+            readPool = ReadConnectionPool.open(getUrl(), config.getReadPoolSize(),
+                                               config.getStatementCacheSize(), config.getAcquireTimeout(),
+                                               readerPragmas);
+        }
+    }
+
+    private void enableWriteAheadLog() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("PRAGMA journal_mode=WAL")) {
+            resultSet.next();
+            String journalMode = resultSet.getString(1);
+            if (!"wal".equalsIgnoreCase(journalMode)) {
+                throw new SQLException("Could not switch to WAL journal mode, journal mode is " + journalMode);
+            }
+        }
+    }
+
+    /**
+     * The profile's PRAGMAs that can be applied to the writer connection - in pooled mode the database has to
+     * stay in WAL mode, and a read-only connection can't change it, so the profile's journal_mode is skipped
+     */
+    private Map<String, String> profilePragmas(SqliteProfile profile) {
+        Map<String, String> pragmas = new LinkedHashMap<>(profile.getPragmas());
+        if (config.isPooled() || config.isReadOnly()) {
+            pragmas.remove("journal_mode");
+        }
+        return pragmas;
+    }
+
+    private void applyPragmas(Map<String, String> pragmas) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (Map.Entry<String, String> pragma : pragmas.entrySet()) {
+                statement.execute("PRAGMA " + pragma.getKey() + "=" + pragma.getValue());
+            }
+        }
+    }
+
+    private Map<String, String> readPragmas(Collection<String> names) throws SQLException {
+        Map<String, String> values = new LinkedHashMap<>();
+        try (Statement statement = connection.createStatement()) {
+            for (String name : names) {
+                try (ResultSet resultSet = statement.executeQuery("PRAGMA " + name)) {
+                    resultSet.next();
+                    values.put(name, resultSet.getString(1));
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @param name a PRAGMA name, e.g. "synchronous"
+     * @return the PRAGMA's current value on the writer connection
+     */
+    public String getPragma(String name) throws SQLException {
+        return readPragmas(List.of(name)).get(name);
+    }
+
+    /**
+     * @return the profile currently applied to the writer connection
+     */
+    public SqliteProfile getActiveProfile() {
+        return activeProfile;
+    }
+
+    /**
+     * Switches the writer connection to another profile until the returned scope is closed, e.g. for the
+     * duration of a term import:
+     * <pre>
+     *     try (CourseDatabase.ProfileScope ignored = courseDatabase.useProfile(SqliteProfile.BULK_LOAD)) {
+     *         ...
+     *     }
+     * </pre>
+     * Some PRAGMAs can only change outside a transaction, so switching profiles (and closing the scope)
+     * commits the open transaction. page_size can't be changed on an existing database and is skipped.
+     * @param profile the profile to apply
+     * @return a scope that restores the previous PRAGMA values when closed
+     */
+    public ProfileScope useProfile(SqliteProfile profile) throws SQLException {
+        Map<String, String> pragmas = profilePragmas(profile);
+        pragmas.remove("page_size");
+        commit();
+        connection.setAutoCommit(true);
+        try {
+            Map<String, String> previousValues = readPragmas(pragmas.keySet());
+            applyPragmas(pragmas);
+            ProfileScope scope = new ProfileScope(previousValues, activeProfile);
+            activeProfile = profile;
+            return scope;
+        } finally {
+            connection.setAutoCommit(false);
+        }
+    }
+
+    /**
+     * A temporarily applied profile, see {@link #useProfile(SqliteProfile)}
+     */
+    public class ProfileScope implements AutoCloseable {
+        private final Map<String, String> previousValues;
+        private final SqliteProfile previousProfile;
+        private boolean closed;
+
+        private ProfileScope(Map<String, String> previousValues, SqliteProfile previousProfile) {
+            this.previousValues = previousValues;
+            this.previousProfile = previousProfile;
+        }
+
+        /**
+         * Commits the open transaction and restores the PRAGMA values in effect before the switch
+         */
+        @Override
+        public void close() throws SQLException {
+            if (closed) {
+                return;
+            }
+            commit();
+            connection.setAutoCommit(true);
+            try {
+                applyPragmas(previousValues);
+                activeProfile = previousProfile;
+                closed = true;
+            } finally {
+                connection.setAutoCommit(false);
+            }
+        }
+    }
+
+    private String getUrl() {
+        return "jdbc:sqlite:" + databaseFilename;
+    }
+
+    private boolean isInMemory() {
+        return databaseFilename.isEmpty() || databaseFilename.equals(":memory:");
     }
 
     public void disconnect() throws SQLException {
+        if (metrics == null) {
+            disconnectUntimed();
+            return;
+        }
+        timedAction("disconnect", null, () -> disconnectUntimed());
+    }
+
+    private void disconnectUntimed() throws SQLException {
         if (connection.isClosed()) {
             throw new IllegalStateException("Connection is already closed");
         }
-        connection.close();
+        try {
+            if (readPool != null) {
+                readPool.close();
+                readPool = null;
+            }
+            statementCache.invalidate();
+        } finally {
+            clearEntityCaches();
+            // the index is only kept in sync with this connection's writes
+            enrollmentIndex = null;
+            connection.close();
+        }
+    }
+
+    /**
+     * @return true when connected in pooled mode, i.e. reads run on their own connections and may be issued
+     * from other threads while the writer is busy
+     */
+    public boolean isPooled() {
+        return readPool != null;
+    }
+
+    /**
+     * @return utilization of the read connection pool, or empty when not connected in pooled mode
+     */
+    public Optional<ReadConnectionPool.Stats> getReadPoolStats() {
+        return readPool == null ? Optional.empty() : Optional.of(readPool.getStats());
+    }
+
+    /**
+     * @return hit/miss statistics of the getStudent cache, or empty if it is disabled
+     */
+    public Optional<EntityCache.Stats> getStudentCacheStats() {
+        return studentCache == null ? Optional.empty() : Optional.of(studentCache.getStats());
+    }
+
+    /**
+     * @return hit/miss statistics of the getCourse cache, or empty if it is disabled
+     */
+    public Optional<EntityCache.Stats> getCourseCacheStats() {
+        return courseCache == null ? Optional.empty() : Optional.of(courseCache.getStats());
+    }
+
+    /**
+     * Number of statement lookups served from the statement cache of the current (or last) connection
+     */
+    public long getStatementCacheHits() {
+        return statementCache == null ? 0 : statementCache.getHits();
+    }
+
+    /**
+     * Number of statement lookups that had to compile a new statement on the current (or last) connection
+     */
+    public long getStatementCacheMisses() {
+        return statementCache == null ? 0 : statementCache.getMisses();
     }
 
     public void commit() throws SQLException {
+        if (metrics == null) {
+            commitUntimed();
+            return;
+        }
+        timedAction("commit", null, () -> commitUntimed());
+    }
+
+    private void commitUntimed() throws SQLException {
         if (connection.isClosed()) {
             throw new IllegalStateException("Connection is already closed");
         }
         connection.commit();
+        enrollmentIndexLoadedInTransaction = false;
+        if (enrollmentIndex != null) {
+            enrollmentIndex.commit();
+        }
+        if (studentCache != null) {
+            studentCache.commit();
+        }
+        if (courseCache != null) {
+            courseCache.commit();
+        }
     }
 
     public void rollback() throws SQLException {
+        if (metrics == null) {
+            rollbackUntimed();
+            return;
+        }
+        timedAction("rollback", null, () -> rollbackUntimed());
+    }
+
+    private void rollbackUntimed() throws SQLException {
         if (connection.isClosed()) {
             throw new IllegalStateException("Connection is already closed");
         }
         connection.rollback();
+        clearEntityCaches();
+        studentIdAllocator.resync();
+        if (enrollmentIndex != null) {
+            enrollmentIndex.rollback();
+            if (enrollmentIndexLoadedInTransaction) {
+                // it was loaded from the writer and may include rows that no longer exist
+                reloadEnrollmentIndex();
+            }
+        }
+    }
+
+    private void clearEntityCaches() {
+        meetingTimes.clear();
+        // counters may include rows written in a rolled back transaction
+        seatCounters.clear();
+        if (studentCache != null) {
+            studentCache.clear();
+        }
+        if (courseCache != null) {
+            courseCache.clear();
+        }
+    }
+
+    private void invalidateStudent(int studentID) {
+        if (studentCache != null) {
+            studentCache.invalidate(studentID);
+        }
+    }
+
+    private void invalidateCourse(int crn) {
+        meetingTimes.remove(crn);
+        seatCounters.invalidate(crn);
+        if (courseCache != null) {
+            courseCache.invalidate(crn);
+        }
     }
 
     public void createTablesIfNeeded() throws SQLException {
+        if (metrics == null) {
+            createTablesIfNeededUntimed();
+            return;
+        }
+        timedAction("createTablesIfNeeded", null, () -> createTablesIfNeededUntimed());
+    }
+
+    private void createTablesIfNeededUntimed() throws SQLException {
         if (connection.isClosed()) {
             throw new IllegalStateException("Connection is already closed");
         }
         createStudentsTable();
         createCoursesTable();
+        addCapacityColumnIfMissing();
         createEnrollmentsTable();
+        createWaitlistTable();
+        createIndexes();
+        createStudentSearch();
+        createEnrollmentSummary();
+        createChangeLog();
     }
 
     private void createStudentsTable() throws SQLException {
@@ -80,6 +445,7 @@ public class CourseDatabase {
                   CourseNumber INTEGER,
                   Section INTEGER,
                   MeetingTime TEXT,
+                  Capacity INTEGER,
                   UNIQUE (Subject, Section, CourseNumber)
                 ) STRICT;
                 """)) {
@@ -87,6 +453,22 @@ public class CourseDatabase {
         }
     }
 
+    /**
+     * Courses tables created before capacities existed lack the column - NULL means unlimited
+     */
+    private void addCapacityColumnIfMissing() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet columns = statement.executeQuery("PRAGMA table_info(Courses)")) {
+                while (columns.next()) {
+                    if (columns.getString("name").equalsIgnoreCase("Capacity")) {
+                        return;
+                    }
+                }
+            }
+            statement.executeUpdate("ALTER TABLE Courses ADD COLUMN Capacity INTEGER");
+        }
+    }
+
     private void createEnrollmentsTable() throws SQLException {
         try(PreparedStatement preparedStatement = connection.prepareStatement("""
                 CREATE TABLE IF NOT EXISTS Enrollments(
@@ -102,25 +484,270 @@ public class CourseDatabase {
         }
     }
 
+    private void createWaitlistTable() throws SQLException {
+        try(PreparedStatement preparedStatement = connection.prepareStatement("""
+                CREATE TABLE IF NOT EXISTS Waitlist(
+                    WaitlistID   INTEGER PRIMARY KEY,
+                    StudentID    INTEGER NOT NULL,
+                    CRN          INTEGER NOT NULL,
+                    UNIQUE (StudentID, CRN),
+                    FOREIGN KEY (StudentID) REFERENCES Students (StudentID) ON DELETE CASCADE,
+                    FOREIGN KEY (CRN) REFERENCES Courses (CRN) ON DELETE CASCADE
+                ) STRICT;
+                """)) {
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    private void createIndexes() throws SQLException {
+        // Students.ComputingID is already indexed by its UNIQUE constraint
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("""
+                CREATE INDEX IF NOT EXISTS EnrollmentsByCrn ON Enrollments (CRN, StudentID);
+                """);
+            statement.executeUpdate("""
+                CREATE INDEX IF NOT EXISTS StudentsByName ON Students (LastName, FirstName);
+                """);
+            statement.executeUpdate("""
+                CREATE INDEX IF NOT EXISTS WaitlistByCrn ON Waitlist (CRN, WaitlistID);
+                """);
+        }
+    }
+
+    /**
+     * FTS5 index over student names and computing IDs for searchStudents. It's an external-content table - the
+     * text stays in Students, and triggers keep the index in step with every write to it.
+     */
+    private void createStudentSearch() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            boolean exists;
+            try (ResultSet resultSet = statement.executeQuery("""
+                    SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'StudentSearch'
+                    """)) {
+                exists = resultSet.next();
+            }
+            // prefix indexes keep short "jo*" style queries from walking every term with that prefix
+            statement.executeUpdate("""
+                CREATE VIRTUAL TABLE IF NOT EXISTS StudentSearch USING fts5(
+                    FirstName, LastName, ComputingID,
+                    content = 'Students', content_rowid = 'StudentId', prefix = '2 3'
+                );
+                """);
+            if (!exists) {
+                // index students written before the search table existed
+                statement.executeUpdate("INSERT INTO StudentSearch(StudentSearch) VALUES('rebuild')");
+            }
+            statement.executeUpdate("""
+                CREATE TRIGGER IF NOT EXISTS StudentSearchInsert AFTER INSERT ON Students
+                BEGIN
+                    INSERT INTO StudentSearch(rowid, FirstName, LastName, ComputingID)
+                        VALUES(NEW.StudentId, NEW.FirstName, NEW.LastName, NEW.ComputingID);
+                END;
+                """);
+            statement.executeUpdate("""
+                CREATE TRIGGER IF NOT EXISTS StudentSearchDelete AFTER DELETE ON Students
+                BEGIN
+                    INSERT INTO StudentSearch(StudentSearch, rowid, FirstName, LastName, ComputingID)
+                        VALUES('delete', OLD.StudentId, OLD.FirstName, OLD.LastName, OLD.ComputingID);
+                END;
+                """);
+            statement.executeUpdate("""
+                CREATE TRIGGER IF NOT EXISTS StudentSearchUpdate AFTER UPDATE ON Students
+                BEGIN
+                    INSERT INTO StudentSearch(StudentSearch, rowid, FirstName, LastName, ComputingID)
+                        VALUES('delete', OLD.StudentId, OLD.FirstName, OLD.LastName, OLD.ComputingID);
+                    INSERT INTO StudentSearch(rowid, FirstName, LastName, ComputingID)
+                        VALUES(NEW.StudentId, NEW.FirstName, NEW.LastName, NEW.ComputingID);
+                END;
+                """);
+        }
+    }
+
+    /**
+     * Per-course enrollment counts for the enrollmentCounts queries. The table always exists, but is only kept
+     * up to date (by triggers on Enrollments) when the summary is enabled.
+     */
+    private void createEnrollmentSummary() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS EnrollmentSummary(
+                    Crn          INTEGER PRIMARY KEY,
+                    Enrolled     INTEGER NOT NULL,
+                    FOREIGN KEY (Crn) REFERENCES Courses (Crn) ON DELETE CASCADE
+                ) STRICT;
+                """);
+            if (!config.isEnrollmentSummary()) {
+                return;
+            }
+            boolean maintained;
+            try (ResultSet resultSet = statement.executeQuery("""
+                    SELECT 1 FROM sqlite_master WHERE type = 'trigger' AND name = 'EnrollmentSummaryInsert'
+                    """)) {
+                maintained = resultSet.next();
+            }
+            statement.executeUpdate("""
+                CREATE TRIGGER IF NOT EXISTS EnrollmentSummaryInsert AFTER INSERT ON Enrollments
+                BEGIN
+                    INSERT INTO EnrollmentSummary(Crn, Enrolled) VALUES(NEW.CRN, 1)
+                        ON CONFLICT(Crn) DO UPDATE SET Enrolled = Enrolled + 1;
+                END;
+                """);
+            statement.executeUpdate("""
+                CREATE TRIGGER IF NOT EXISTS EnrollmentSummaryDelete AFTER DELETE ON Enrollments
+                BEGIN
+                    UPDATE EnrollmentSummary SET Enrolled = Enrolled - 1 WHERE Crn = OLD.CRN;
+                END;
+                """);
+            statement.executeUpdate("""
+                CREATE TRIGGER IF NOT EXISTS EnrollmentSummaryUpdate AFTER UPDATE OF CRN ON Enrollments
+                BEGIN
+                    UPDATE EnrollmentSummary SET Enrolled = Enrolled - 1 WHERE Crn = OLD.CRN;
+                    INSERT INTO EnrollmentSummary(Crn, Enrolled) VALUES(NEW.CRN, 1)
+                        ON CONFLICT(Crn) DO UPDATE SET Enrolled = Enrolled + 1;
+                END;
+                """);
+            if (!maintained) {
+                // enrollments written while the triggers didn't exist aren't counted yet
+                statement.executeUpdate("DELETE FROM EnrollmentSummary");
+                statement.executeUpdate("""
+                    INSERT INTO EnrollmentSummary(Crn, Enrolled)
+                        SELECT CRN, COUNT(*) FROM Enrollments GROUP BY CRN
+                    """);
+            }
+        }
+    }
+
+    /**
+     * The ChangeLog table, and with the change feed enabled the triggers that fill it. AUTOINCREMENT keeps
+     * sequence numbers from being reused once compaction deletes the newest rows.
+     */
+    private void createChangeLog() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS ChangeLog(
+                    Seq          INTEGER PRIMARY KEY AUTOINCREMENT,
+                    TableName    TEXT NOT NULL,
+                    Operation    TEXT NOT NULL,
+                    StudentID    INTEGER,
+                    CRN          INTEGER
+                ) STRICT;
+                """);
+            statement.executeUpdate("""
+                CREATE INDEX IF NOT EXISTS ChangeLogByRow ON ChangeLog (TableName, StudentID, CRN, Seq);
+                """);
+            if (!config.isChangeFeed()) {
+                return;
+            }
+            for (Change.Operation operation : Change.Operation.values()) {
+                String row = operation == Change.Operation.DELETE ? "OLD" : "NEW";
+                statement.executeUpdate(changeTrigger("Students", operation,
+                                                      row + ".StudentId", "NULL"));
+                statement.executeUpdate(changeTrigger("Courses", operation,
+                                                      "NULL", row + ".Crn"));
+                statement.executeUpdate(changeTrigger("Enrollments", operation,
+                                                      row + ".StudentID", row + ".CRN"));
+            }
+        }
+    }
+
+    private static String changeTrigger(String table, Change.Operation operation, String studentId, String crn) {
+        return """
+                CREATE TRIGGER IF NOT EXISTS %1$sChangeLog%2$s AFTER %2$s ON %1$s
+                BEGIN
+                    INSERT INTO ChangeLog(TableName, Operation, StudentID, CRN)
+                        VALUES('%1$s', '%2$s', %3$s, %4$s);
+                END;
+                """.formatted(table, operation.name(), studentId, crn);
+    }
+
+    /**
+     * Runs EXPLAIN QUERY PLAN on every query this class issues, so tests and diagnostics can check that
+     * lookups use indexes - see {@link QueryPlan#hasUnexpectedFullScan()}. Requires the tables to exist.
+     * @return one plan per query
+     */
+    public List<QueryPlan> explainQueryPlans() throws SQLException {
+        List<QueryPlan> plans = new ArrayList<>();
+        try (Statement statement = connection.createStatement()) {
+            for (NamedQuery query : QUERIES) {
+                List<String> steps = new ArrayList<>();
+                try (ResultSet resultSet = statement.executeQuery("EXPLAIN QUERY PLAN " + query.sql())) {
+                    while (resultSet.next()) {
+                        steps.add(resultSet.getString("detail"));
+                    }
+                }
+                plans.add(new QueryPlan(query.name(), query.sql(), List.copyOf(steps), query.fullScanExpected()));
+            }
+        }
+        return plans;
+    }
+
     public void clearTables() throws SQLException {
-        try (PreparedStatement deleteEnrollments = connection.prepareStatement("""
-            DELETE FROM Enrollments;
-            """)) {
-            deleteEnrollments.executeUpdate();
+        if (metrics == null) {
+            clearTablesUntimed();
+            return;
         }
-        try (PreparedStatement deleteStudents = connection.prepareStatement("""
-            DELETE FROM Students;
-            """)) {
-            deleteStudents.executeUpdate();
+        timedAction("clearTables", null, () -> clearTablesUntimed());
+    }
+
+    private void clearTablesUntimed() throws SQLException {
+        clearEntityCaches();
+        studentIdAllocator.reset();
+        if (enrollmentIndex != null) {
+            enrollmentIndex.stageClear();
         }
-        try (PreparedStatement deleteCourses = connection.prepareStatement("""
+        statementCache.prepare("""
+            DELETE FROM Waitlist;
+            """).executeUpdate();
+        statementCache.prepare("""
+            DELETE FROM Enrollments;
+            """).executeUpdate();
+        statementCache.prepare("""
+            DELETE FROM Students;
+            """).executeUpdate();
+        statementCache.prepare("""
         DELETE FROM Courses;
-        """)) {
-            deleteCourses.executeUpdate();
-        }
+        """).executeUpdate();
     }
 
     public void dropTables() throws SQLException {
+        if (metrics == null) {
+            dropTablesUntimed();
+            return;
+        }
+        timedAction("dropTables", null, () -> dropTablesUntimed());
+    }
+
+    private void dropTablesUntimed() throws SQLException {
+        // cached statements are compiled against the tables being dropped
+        statementCache.invalidate();
+        if (readPool != null) {
+            readPool.invalidateStatements();
+        }
+        clearEntityCaches();
+        studentIdAllocator.reset();
+        if (enrollmentIndex != null) {
+            enrollmentIndex.stageClear();
+        }
+        try (PreparedStatement deleteChangeLog = connection.prepareStatement("""
+            DROP TABLE IF EXISTS ChangeLog;
+            """)) {
+            deleteChangeLog.executeUpdate();
+        }
+        try (PreparedStatement deleteEnrollmentSummary = connection.prepareStatement("""
+            DROP TABLE IF EXISTS EnrollmentSummary;
+            """)) {
+            deleteEnrollmentSummary.executeUpdate();
+        }
+        try (PreparedStatement deleteStudentSearch = connection.prepareStatement("""
+            DROP TABLE IF EXISTS StudentSearch;
+            """)) {
+            deleteStudentSearch.executeUpdate();
+        }
+        try (PreparedStatement deleteWaitlist = connection.prepareStatement("""
+            DROP TABLE IF EXISTS Waitlist;
+            """)) {
+            deleteWaitlist.executeUpdate();
+        }
         try (PreparedStatement deleteEnrollments = connection.prepareStatement("""
             DROP TABLE IF EXISTS Enrollments;
             """)) {
@@ -138,101 +765,177 @@ public class CourseDatabase {
         }
     }
 
+    /**
+     * Reserves an unused student ID. The maximum ID is read from the database only once per connection,
+     * after that IDs come from an in-process counter, so concurrent callers always get distinct IDs and
+     * consecutive calls return increasing IDs.
+     * @return a student ID not used by any student or returned by an earlier call
+     */
     public int getNextStudentID() throws SQLException {
-        try(PreparedStatement selectNextId = connection.prepareStatement("""
-                SELECT Max(StudentId) + 1 AS NextID FROM Students;"""
-        )) {
-            ResultSet resultSet = selectNextId.executeQuery();
+        if (metrics == null) {
+            return studentIdAllocator.allocate();
+        }
+        return timed("getNextStudentID", null, studentIdAllocator::allocate);
+    }
+
+    // a bare Max() so SQLite reads the last rowid instead of scanning the table
+    private static final NamedQuery SELECT_MAX_STUDENT_ID = query("getNextStudentID", false, """
+            SELECT Max(StudentId) AS MaxID FROM Students;""");
+
+    private int selectNextStudentID() throws SQLException {
+        PreparedStatement selectMaxId = statementCache.prepare(SELECT_MAX_STUDENT_ID.sql());
+        try (ResultSet resultSet = selectMaxId.executeQuery()) {
             resultSet.next();
-            int nextID = resultSet.getInt("NextID");
+            int maxID = resultSet.getInt("MaxID");
             if (resultSet.wasNull()) {
                 return 1;
             }
-            return nextID;
+            return maxID + 1;
         }
     }
 
+    private static final String INSERT_STUDENT = """
+        INSERT INTO Students(StudentID, FirstName, LastName, ComputingID)
+            VALUES(?, ?, ?, ?);""";
+
     /**
      * Shallow insert
      * @param student
      * @throws SQLException
      */
     public void addNewStudent(Student student) throws SQLException{
-        try(PreparedStatement studentInsert = connection.prepareStatement("""
-                INSERT INTO Students(StudentID, FirstName, LastName, ComputingID)
-                    VALUES(?, ?, ?, ?);"""
-        )) {
-            studentInsert.setInt(1, student.getId());
-            studentInsert.setString(2, student.getFirstName());
-            studentInsert.setString(3, student.getLastName());
-            studentInsert.setString(4, student.getComputingID());
-
-            studentInsert.executeUpdate();
+        if (metrics == null) {
+            addNewStudentUntimed(student);
+            return;
         }
+        timedAction("addNewStudent", INSERT_STUDENT, () -> addNewStudentUntimed(student),
+                    student.getId(), student.getFirstName(), student.getLastName(), student.getComputingID());
+    }
+
+    private void addNewStudentUntimed(Student student) throws SQLException {
+        invalidateStudent(student.getId());
+        studentIdAllocator.observe(student.getId());
+        PreparedStatement studentInsert = statementCache.prepare(INSERT_STUDENT);
+        studentInsert.setInt(1, student.getId());
+        studentInsert.setString(2, student.getFirstName());
+        studentInsert.setString(3, student.getLastName());
+        studentInsert.setString(4, student.getComputingID());
+
+        studentInsert.executeUpdate();
     }
 
+    private static final String UPSERT_STUDENT = """
+        INSERT INTO Students(StudentID, FirstName, LastName, ComputingID)
+            VALUES(?, ?, ?, ?) ON CONFLICT(StudentID) DO UPDATE
+                SET FirstName = excluded.FirstName,
+                    LastName = excluded.LastName;""";
+
     /**
      * Shallow upsert - allows adding a student or changing and student's firstName/lastName
      * @param student
      * @throws SQLException
      */
     public void upsertStudent(Student student) throws SQLException{
-        try(PreparedStatement studentUpsert = connection.prepareStatement("""
-                INSERT INTO Students(StudentID, FirstName, LastName, ComputingID)
-                    VALUES(?, ?, ?, ?) ON CONFLICT(StudentID) DO UPDATE
-                        SET FirstName = excluded.FirstName,
-                            LastName = excluded.LastName;"""
-        )) {
-            //Values
-            studentUpsert.setInt(1, student.getId());
-            studentUpsert.setString(2, student.getFirstName());
-            studentUpsert.setString(3, student.getLastName());
-            studentUpsert.setString(4, student.getComputingID());
-
-            studentUpsert.executeUpdate();
+        if (metrics == null) {
+            upsertStudentUntimed(student);
+            return;
         }
+        timedAction("upsertStudent", UPSERT_STUDENT, () -> upsertStudentUntimed(student),
+                    student.getId(), student.getFirstName(), student.getLastName(), student.getComputingID());
     }
 
-    public void addNewCourse(Course course) throws SQLException{
-        try(PreparedStatement courseInsert = connection.prepareStatement("""
-                INSERT INTO Courses(Crn, Subject, CourseNumber, Section, MeetingTime)
-                    VALUES(?, ?, ?, ?, ?);"""
-        )) {
-            courseInsert.setInt(1, course.getCourseNumber());
-            courseInsert.setString(2, course.getSubject());
-            courseInsert.setInt(3, course.getCourseNumber());
-            courseInsert.setInt(4, course.getSectionNumber());
-            courseInsert.setString(5, course.getMeetingTime());
+    private void upsertStudentUntimed(Student student) throws SQLException {
+        invalidateStudent(student.getId());
+        studentIdAllocator.observe(student.getId());
+        PreparedStatement studentUpsert = statementCache.prepare(UPSERT_STUDENT);
+        //Values
+        studentUpsert.setInt(1, student.getId());
+        studentUpsert.setString(2, student.getFirstName());
+        studentUpsert.setString(3, student.getLastName());
+        studentUpsert.setString(4, student.getComputingID());
+
+        studentUpsert.executeUpdate();
+    }
+
+    private static final String INSERT_COURSE = """
+        INSERT INTO Courses(Crn, Subject, CourseNumber, Section, MeetingTime, Capacity)
+            VALUES(?, ?, ?, ?, ?, ?);""";
 
-            courseInsert.executeUpdate();
+    public void addNewCourse(Course course) throws SQLException{
+        if (metrics == null) {
+            addNewCourseUntimed(course);
+            return;
         }
+        timedAction("addNewCourse", INSERT_COURSE, () -> addNewCourseUntimed(course),
+                    course.getCrn(), course.getSubject(), course.getCourseNumber(), course.getSectionNumber(),
+                    course.getMeetingTime(), course.getCapacity());
+    }
+
+    private void addNewCourseUntimed(Course course) throws SQLException {
+        invalidateCourse(course.getCrn());
+        PreparedStatement courseInsert = statementCache.prepare(INSERT_COURSE);
+        courseInsert.setInt(1, course.getCrn());
+        courseInsert.setString(2, course.getSubject());
+        courseInsert.setInt(3, course.getCourseNumber());
+        courseInsert.setInt(4, course.getSectionNumber());
+        courseInsert.setString(5, course.getMeetingTime());
+        bindCapacity(courseInsert, 6, course.getCapacity());
+
+        courseInsert.executeUpdate();
     }
 
+    private static final String UPSERT_COURSE = """
+        INSERT INTO Courses(Crn, Subject, CourseNumber, Section, MeetingTime, Capacity)
+            VALUES(?, ?, ?, ?, ?, ?) ON CONFLICT(Crn) DO UPDATE
+                SET MeetingTime = excluded.MeetingTime;""";
+
     /**
-     * Shallow upsert of course - does not affect enrollments, only MeetingTime can be updated
+     * Shallow upsert of course - does not affect enrollments, only MeetingTime can be updated. Use
+     * {@link #setCourseCapacity(Course, int)} to change an existing course's capacity.
      * @param course the course to upsert
      * @throws SQLException
      */
     public void upsertCourse(Course course) throws SQLException {
-        try(PreparedStatement courseUpsert = connection.prepareStatement("""
-                INSERT INTO Courses(Crn, Subject, CourseNumber, Section, MeetingTime)
-                    VALUES(?, ?, ?, ?, ?) ON CONFLICT(Crn) DO UPDATE
-                        SET MeetingTime = excluded.MeetingTime;"""
-        )) {
-            courseUpsert.setInt(1, course.getCrn());
-            courseUpsert.setString(2, course.getSubject());
-            courseUpsert.setInt(3, course.getCourseNumber());
-            courseUpsert.setInt(4, course.getSectionNumber());
-            courseUpsert.setString(5, course.getMeetingTime());
-            courseUpsert.executeUpdate();
+        if (metrics == null) {
+            upsertCourseUntimed(course);
+            return;
         }
+        timedAction("upsertCourse", UPSERT_COURSE, () -> upsertCourseUntimed(course),
+                    course.getCrn(), course.getSubject(), course.getCourseNumber(), course.getSectionNumber(),
+                    course.getMeetingTime(), course.getCapacity());
+    }
+
+    private void upsertCourseUntimed(Course course) throws SQLException {
+        invalidateCourse(course.getCrn());
+        PreparedStatement courseUpsert = statementCache.prepare(UPSERT_COURSE);
+        courseUpsert.setInt(1, course.getCrn());
+        courseUpsert.setString(2, course.getSubject());
+        courseUpsert.setInt(3, course.getCourseNumber());
+        courseUpsert.setInt(4, course.getSectionNumber());
+        courseUpsert.setString(5, course.getMeetingTime());
+        bindCapacity(courseUpsert, 6, course.getCapacity());
+        courseUpsert.executeUpdate();
     }
 
+    private static final String INSERT_ENROLLMENT = """
+        INSERT INTO Enrollments(StudentID, CRN)
+            VALUES(?, ?);""";
+
     public void addEnrollment(Student student, Course course) throws SQLException {
-        try(PreparedStatement enrollmentInsert = connection.prepareStatement("""
-                INSERT INTO Enrollments(StudentID, CRN)
-                    VALUES(?, ?);"""
-        )) {
+        if (metrics == null) {
+            insertEnrollment(student, course);
+            return;
+        }
+        timedAction("addEnrollment", INSERT_ENROLLMENT, () -> insertEnrollment(student, course),
+                    student.getId(), course.getCrn());
+    }
+
+    /**
+     * addEnrollment without the metrics, for operations that are timed themselves
+     */
+    private void insertEnrollment(Student student, Course course) throws SQLException {
+        try {
+            PreparedStatement enrollmentInsert = statementCache.prepare(INSERT_ENROLLMENT);
             enrollmentInsert.setInt(1, student.getId());
             enrollmentInsert.setInt(2, course.getCrn());
             enrollmentInsert.executeUpdate();
@@ -240,69 +943,1631 @@ public class CourseDatabase {
             rollback();
             throw e;
         }
+        enrolled(student.getId(), course.getCrn());
     }
 
     /**
-     * Gets a **shallow copy** of students - does not include course lists sorted by student ID
-     * @return a shallow copy of students without their course lists
+     * Keeps the enrollment index and seat counters in step with an inserted enrollment
      */
-    public List<Student> getStudents() throws SQLException {
-        try(PreparedStatement selectStudent = connection.prepareStatement("""
-                SELECT StudentId, FirstName, LastName, ComputingID
-                    FROM Students
-                    ORDER BY StudentID;
-                """)) {
-            ResultSet resultSet = selectStudent.executeQuery();
-            List<Student> students = new ArrayList<>();
-            while(resultSet.next()) {
-                int studentId = resultSet.getInt("StudentID");
-                String firstName = resultSet.getString("FirstName");
-                String lastName = resultSet.getString("LastName");
-                String computingID = resultSet.getString("ComputingID");
-                students.add(new Student(studentId, firstName, lastName, computingID));
-            }
-            return students;
+    private void enrolled(int studentId, int crn) {
+        if (enrollmentIndex != null) {
+            enrollmentIndex.stageAdd(studentId, crn);
         }
+        seatCounters.adjust(crn, 1);
     }
 
-    public Optional<Student> getStudent(int studentID) throws SQLException {
-        try(PreparedStatement selectStudent = connection.prepareStatement("""
-                SELECT StudentId, FirstName, LastName, ComputingID
-                    FROM Students
-                    WHERE StudentID = ?
-                """)) {
-            selectStudent.setInt(1, studentID);
+    private static final String INSERT_WAITLIST = """
+        INSERT INTO Waitlist(StudentID, CRN)
+            SELECT ?1, ?2
+                WHERE NOT EXISTS (SELECT 1 FROM Enrollments WHERE StudentID = ?1 AND CRN = ?2);""";
 
-            ResultSet resultSet = selectStudent.executeQuery();
+    /**
+     * Enrolls the student if the course has a free seat, otherwise puts them at the end of its waitlist.
+     * Seats are checked against in-memory counters rather than counted with a query. The seat check and the
+     * insert run under one lock, so a course is never filled past its capacity by this method, and
+     * concurrent calls don't share the writer connection. Like every other write, it must not run alongside
+     * writes that don't take that lock - see {@link AsyncCourseDatabase} for funneling writes through one
+     * thread. Unlike {@link #addEnrollment(Student, Course)}, which ignores capacity, a failure doesn't roll
+     * back the open transaction.
+     * @throws SQLException if the student is already enrolled in or waitlisted for the course, or either
+     * doesn't exist
+     */
+    public EnrollmentStatus enrollOrWaitlist(Student student, Course course) throws SQLException {
+        if (metrics == null) {
+            return enrollOrWaitlistUntimed(student, course);
+        }
+        return timed("enrollOrWaitlist", INSERT_ENROLLMENT, () -> enrollOrWaitlistUntimed(student, course),
+                     student.getId(), course.getCrn());
+    }
 
-            // check if result set is empty - if it is, .next() returns false
-            if (!resultSet.next()) {
-                return Optional.empty();
+    private EnrollmentStatus enrollOrWaitlistUntimed(Student student, Course course) throws SQLException {
+        synchronized (seatCounters) {
+            return enrollOrWaitlistLocked(student, course);
+        }
+    }
+
+    private EnrollmentStatus enrollOrWaitlistLocked(Student student, Course course) throws SQLException {
+        if (seatCounters.tryTake(course.getCrn())) {
+            try {
+                PreparedStatement enrollmentInsert = statementCache.prepare(INSERT_ENROLLMENT);
+                enrollmentInsert.setInt(1, student.getId());
+                enrollmentInsert.setInt(2, course.getCrn());
+                enrollmentInsert.executeUpdate();
+            } catch (SQLException e) {
+                seatCounters.adjust(course.getCrn(), -1);
+                throw e;
+            }
+            if (enrollmentIndex != null) {
+                enrollmentIndex.stageAdd(student.getId(), course.getCrn());
             }
-            // otherwise .next() is pointing at the student
-            int studentId = resultSet.getInt("StudentID");
-            String firstName = resultSet.getString("FirstName");
-            String lastName = resultSet.getString("LastName");
-            String computingID = resultSet.getString("ComputingID");
-            return Optional.of(new Student(studentId, firstName, lastName, computingID));
+            return EnrollmentStatus.ENROLLED;
         }
+        PreparedStatement waitlistInsert = statementCache.prepare(INSERT_WAITLIST);
+        waitlistInsert.setInt(1, student.getId());
+        waitlistInsert.setInt(2, course.getCrn());
+        if (waitlistInsert.executeUpdate() == 0) {
+            throw new SQLException("Student " + student.getId() + " is already enrolled in CRN "
+                                   + course.getCrn(), "23000", SQLITE_CONSTRAINT);
+        }
+        return EnrollmentStatus.WAITLISTED;
     }
 
-    public List<Student> getStudentsByCourse(Course course) throws SQLException {
-        try(PreparedStatement selectEnrollment = connection.prepareStatement("""
-            SELECT StudentID FROM Enrollments
-                WHERE CRN = ?
-            """)) {
-            selectEnrollment.setInt(1, course.getCrn());
-            ResultSet resultSet = selectEnrollment.executeQuery();
+    /**
+     * @return the course's free seats, {@link Course#UNLIMITED} if it has no limit, or 0 if there is no
+     * such course
+     */
+    public int getAvailableSeats(Course course) throws SQLException {
+        if (metrics == null) {
+            return seatCounters.available(course.getCrn());
+        }
+        return timed("getAvailableSeats", SELECT_SEATS.sql(), () -> seatCounters.available(course.getCrn()),
+                     course.getCrn());
+    }
 
-            List<Student> students = new ArrayList<>();
-            while(resultSet.next()) {
-                int studentID = resultSet.getInt("StudentID");
-                Optional<Student> optionalStudent = getStudent(studentID);
-                optionalStudent.ifPresent( student -> students.add(student) );
+    private static final NamedQuery SELECT_SEATS = query("seats", false, """
+            SELECT Capacity, (SELECT COUNT(*) FROM Enrollments WHERE CRN = ?1) AS Taken
+                FROM Courses
+                WHERE Crn = ?1
+            """);
+
+    /**
+     * Seat counter loader - reads the writer's view, later enrollment writes are applied as adjustments
+     */
+    private int[] selectSeats(int crn) throws SQLException {
+        PreparedStatement selectSeats = statementCache.prepare(SELECT_SEATS.sql());
+        selectSeats.setInt(1, crn);
+        try (ResultSet resultSet = selectSeats.executeQuery()) {
+            if (!resultSet.next()) {
+                return null;
             }
-            return students;
+            int capacity = resultSet.getInt("Capacity");
+            if (resultSet.wasNull()) {
+                capacity = Course.UNLIMITED;
+            }
+            return new int[] {capacity, resultSet.getInt("Taken")};
+        }
+    }
+
+    private static final String UPDATE_CAPACITY = """
+        UPDATE Courses SET Capacity = ?
+            WHERE Crn = ?;""";
+
+    /**
+     * Changes a course's capacity, enrolling students from its waitlist if seats opened up. Lowering the
+     * capacity below the current enrollment doesn't drop anyone.
+     * @param capacity the number of seats, or {@link Course#UNLIMITED}
+     * @return false if there is no such course
+     * @throws IllegalArgumentException if the capacity is negative and not UNLIMITED
+     */
+    public boolean setCourseCapacity(Course course, int capacity) throws SQLException {
+        Course.checkCapacity(capacity);
+        if (metrics == null) {
+            return setCourseCapacityUntimed(course, capacity);
+        }
+        return timed("setCourseCapacity", UPDATE_CAPACITY, () -> setCourseCapacityUntimed(course, capacity),
+                     capacity, course.getCrn());
+    }
+
+    private boolean setCourseCapacityUntimed(Course course, int capacity) throws SQLException {
+        synchronized (seatCounters) {
+            invalidateCourse(course.getCrn());
+            PreparedStatement capacityUpdate = statementCache.prepare(UPDATE_CAPACITY);
+            bindCapacity(capacityUpdate, 1, capacity);
+            capacityUpdate.setInt(2, course.getCrn());
+            if (capacityUpdate.executeUpdate() == 0) {
+                return false;
+            }
+            promoteFromWaitlist(course.getCrn());
+            return true;
+        }
+    }
+
+    private static final NamedQuery SELECT_WAITLIST_HEAD = query("waitlistHead", false, """
+            SELECT WaitlistID, StudentID
+                FROM Waitlist
+                WHERE CRN = ?
+                ORDER BY WaitlistID
+                LIMIT 1
+            """);
+
+    private static final String DELETE_WAITLIST_ENTRY = """
+        DELETE FROM Waitlist
+            WHERE WaitlistID = ?;""";
+
+    /**
+     * Moves students from the head of the course's waitlist into free seats
+     */
+    private void promoteFromWaitlist(int crn) throws SQLException {
+        PreparedStatement selectHead = statementCache.prepare(SELECT_WAITLIST_HEAD.sql());
+        while (true) {
+            int waitlistId;
+            int studentId;
+            selectHead.setInt(1, crn);
+            try (ResultSet resultSet = selectHead.executeQuery()) {
+                if (!resultSet.next()) {
+                    return;
+                }
+                waitlistId = resultSet.getInt("WaitlistID");
+                studentId = resultSet.getInt("StudentID");
+            }
+            if (!seatCounters.tryTake(crn)) {
+                return;
+            }
+            boolean inserted = true;
+            try {
+                PreparedStatement enrollmentInsert = statementCache.prepare(INSERT_ENROLLMENT);
+                enrollmentInsert.setInt(1, studentId);
+                enrollmentInsert.setInt(2, crn);
+                enrollmentInsert.executeUpdate();
+            } catch (SQLException e) {
+                if (!isConstraintViolation(e)) {
+                    seatCounters.adjust(crn, -1);
+                    throw e;
+                }
+                // enrolled some other way since joining the waitlist - drop the stale entry
+                seatCounters.adjust(crn, -1);
+                inserted = false;
+            }
+            if (inserted && enrollmentIndex != null) {
+                enrollmentIndex.stageAdd(studentId, crn);
+            }
+            PreparedStatement waitlistDelete = statementCache.prepare(DELETE_WAITLIST_ENTRY);
+            waitlistDelete.setInt(1, waitlistId);
+            waitlistDelete.executeUpdate();
+        }
+    }
+
+    private static final NamedQuery SELECT_WAITLIST = query("getWaitlist", false, """
+            SELECT s.StudentId, s.FirstName, s.LastName, s.ComputingID
+                FROM Waitlist w
+                JOIN Students s ON s.StudentId = w.StudentID
+                WHERE w.CRN = ?
+                ORDER BY w.WaitlistID
+            """);
+
+    /**
+     * Gets **shallow copies** of the students waiting for a seat in the course, first in line first
+     */
+    public List<Student> getWaitlist(Course course) throws SQLException {
+        if (metrics == null) {
+            return getWaitlistUntimed(course);
+        }
+        return timed("getWaitlist", SELECT_WAITLIST.sql(), () -> getWaitlistUntimed(course), course.getCrn());
+    }
+
+    private List<Student> getWaitlistUntimed(Course course) throws SQLException {
+        return read(statements -> {
+            PreparedStatement selectWaitlist = statements.prepare(SELECT_WAITLIST.sql());
+            selectWaitlist.setInt(1, course.getCrn());
+            try (ResultSet resultSet = selectWaitlist.executeQuery()) {
+                List<Student> students = new ArrayList<>();
+                while (resultSet.next()) {
+                    students.add(readStudent(resultSet));
+                }
+                return students;
+            }
+        });
+    }
+
+    /**
+     * Like {@link #addEnrollment(Student, Course)}, but first checks the course's meeting time against the
+     * student's current courses. The check runs in memory against the enrollment index (including this
+     * transaction's changes) and meeting times cached per CRN, so it costs no queries once warm.
+     * @throws ScheduleConflictException if the course overlaps one the student is enrolled in - nothing is
+     * written and, unlike other failures, the open transaction is not rolled back
+     */
+    public void addEnrollmentCheckingConflicts(Student student, Course course) throws SQLException {
+        if (metrics == null) {
+            addEnrollmentCheckingConflictsUntimed(student, course);
+            return;
+        }
+        timedAction("addEnrollmentCheckingConflicts", INSERT_ENROLLMENT,
+                    () -> addEnrollmentCheckingConflictsUntimed(student, course), student.getId(), course.getCrn());
+    }
+
+    private void addEnrollmentCheckingConflictsUntimed(Student student, Course course) throws SQLException {
+        int[] currentCrns = getEnrollmentIndex().pendingCrnsOf(student.getId());
+        MeetingTime requested = getMeetingTime(course.getCrn());
+        // an unknown course is left to the foreign key to reject
+        if (requested != null) {
+            loadMeetingTimes(currentCrns);
+            for (int crn : currentCrns) {
+                MeetingTime current = meetingTimes.get(crn);
+                if (crn != course.getCrn() && current != null && requested.overlaps(current)) {
+                    throw new ScheduleConflictException(student.getId(), course.getCrn(), crn);
+                }
+            }
+        }
+        insertEnrollment(student, course);
+    }
+
+    private MeetingTime getMeetingTime(int crn) throws SQLException {
+        MeetingTime meetingTime = meetingTimes.get(crn);
+        if (meetingTime == null) {
+            loadMeetingTimes(new int[] {crn});
+            meetingTime = meetingTimes.get(crn);
+        }
+        return meetingTime;
+    }
+
+    private static final NamedQuery SELECT_MEETING_TIMES = query("meetingTimes", false, """
+            SELECT Crn, MeetingTime
+                FROM Courses
+                WHERE Crn IN (SELECT value FROM json_each(?))
+            """);
+
+    /**
+     * Parses and caches the meeting times of the given courses that aren't cached yet, with one query
+     */
+    private void loadMeetingTimes(int[] crns) throws SQLException {
+        StringJoiner missing = new StringJoiner(",", "[", "]");
+        boolean anyMissing = false;
+        for (int crn : crns) {
+            if (!meetingTimes.containsKey(crn)) {
+                missing.add(Integer.toString(crn));
+                anyMissing = true;
+            }
+        }
+        if (!anyMissing) {
+            return;
+        }
+        // from the writer, which sees courses added in the open transaction
+        PreparedStatement selectMeetingTimes = statementCache.prepare(SELECT_MEETING_TIMES.sql());
+        selectMeetingTimes.setString(1, missing.toString());
+        try (ResultSet resultSet = selectMeetingTimes.executeQuery()) {
+            while (resultSet.next()) {
+                meetingTimes.put(resultSet.getInt("Crn"), parseMeetingTime(resultSet.getString("MeetingTime")));
+            }
+        }
+    }
+
+    /**
+     * Courses.MeetingTime is free text - times that don't parse (e.g. "Online") are treated as unscheduled, so
+     * they never conflict rather than blocking every enrollment in the course
+     */
+    private static MeetingTime parseMeetingTime(String meetingTime) {
+        try {
+            return MeetingTime.parse(meetingTime);
+        } catch (IllegalArgumentException e) {
+            return MeetingTime.NONE;
+        }
+    }
+
+    private static final String DELETE_ENROLLMENT = """
+        DELETE FROM Enrollments
+            WHERE StudentID = ? AND CRN = ?;""";
+
+    /**
+     * Removes a student from a course. If the course has a waitlist, the freed seat goes to the student at
+     * its head.
+     * @return false if the student wasn't enrolled in the course
+     */
+    public boolean removeEnrollment(Student student, Course course) throws SQLException {
+        if (metrics == null) {
+            return removeEnrollmentUntimed(student, course);
+        }
+        return timed("removeEnrollment", DELETE_ENROLLMENT, () -> removeEnrollmentUntimed(student, course),
+                     student.getId(), course.getCrn());
+    }
+
+    private boolean removeEnrollmentUntimed(Student student, Course course) throws SQLException {
+        // the freed seat is handed to the waitlist under the same lock as enrollOrWaitlist
+        synchronized (seatCounters) {
+            PreparedStatement enrollmentDelete = statementCache.prepare(DELETE_ENROLLMENT);
+            enrollmentDelete.setInt(1, student.getId());
+            enrollmentDelete.setInt(2, course.getCrn());
+            if (enrollmentDelete.executeUpdate() == 0) {
+                return false;
+            }
+            if (enrollmentIndex != null) {
+                enrollmentIndex.stageRemove(student.getId(), course.getCrn());
+            }
+            seatCounters.adjust(course.getCrn(), -1);
+            promoteFromWaitlist(course.getCrn());
+            return true;
+        }
+    }
+
+    /**
+     * Bulk shallow upsert of students, see {@link #upsertStudent(Student)}
+     * @param students the students to upsert
+     * @return the number of rows written and any rows rejected by a constraint
+     * @throws SQLException
+     */
+    public BatchResult<Student> upsertStudents(Collection<Student> students) throws SQLException {
+        return upsertStudents(students, DEFAULT_BATCH_CHUNK_SIZE);
+    }
+
+    public BatchResult<Student> upsertStudents(Collection<Student> students, int chunkSize) throws SQLException {
+        if (metrics == null) {
+            return upsertStudentsUntimed(students, chunkSize);
+        }
+        return timed("upsertStudents", UPSERT_STUDENT, () -> upsertStudentsUntimed(students, chunkSize),
+                     students.size());
+    }
+
+    private BatchResult<Student> upsertStudentsUntimed(Collection<Student> students, int chunkSize)
+            throws SQLException {
+        for (Student student : students) {
+            invalidateStudent(student.getId());
+            studentIdAllocator.observe(student.getId());
+        }
+        return executeBatch(UPSERT_STUDENT,
+                students, chunkSize, (studentUpsert, student) -> {
+                    studentUpsert.setInt(1, student.getId());
+                    studentUpsert.setString(2, student.getFirstName());
+                    studentUpsert.setString(3, student.getLastName());
+                    studentUpsert.setString(4, student.getComputingID());
+                });
+    }
+
+    /**
+     * Bulk shallow upsert of courses, see {@link #upsertCourse(Course)}
+     * @param courses the courses to upsert
+     * @return the number of rows written and any rows rejected by a constraint
+     * @throws SQLException
+     */
+    public BatchResult<Course> upsertCourses(Collection<Course> courses) throws SQLException {
+        return upsertCourses(courses, DEFAULT_BATCH_CHUNK_SIZE);
+    }
+
+    public BatchResult<Course> upsertCourses(Collection<Course> courses, int chunkSize) throws SQLException {
+        if (metrics == null) {
+            return upsertCoursesUntimed(courses, chunkSize);
+        }
+        return timed("upsertCourses", UPSERT_COURSE, () -> upsertCoursesUntimed(courses, chunkSize), courses.size());
+    }
+
+    private BatchResult<Course> upsertCoursesUntimed(Collection<Course> courses, int chunkSize) throws SQLException {
+        for (Course course : courses) {
+            invalidateCourse(course.getCrn());
+        }
+        return executeBatch(UPSERT_COURSE,
+                courses, chunkSize, (courseUpsert, course) -> {
+                    courseUpsert.setInt(1, course.getCrn());
+                    courseUpsert.setString(2, course.getSubject());
+                    courseUpsert.setInt(3, course.getCourseNumber());
+                    courseUpsert.setInt(4, course.getSectionNumber());
+                    courseUpsert.setString(5, course.getMeetingTime());
+                    bindCapacity(courseUpsert, 6, course.getCapacity());
+                });
+    }
+
+    /**
+     * Bulk insert of enrollments. Unlike {@link #addEnrollment(Student, Course)}, a duplicate or dangling
+     * enrollment is reported in the result and does not roll back the open transaction.
+     * @param enrollments the enrollments to insert
+     * @return the number of rows written and any rows rejected by a constraint
+     * @throws SQLException
+     */
+    public BatchResult<Enrollment> addEnrollments(Collection<Enrollment> enrollments) throws SQLException {
+        return addEnrollments(enrollments, DEFAULT_BATCH_CHUNK_SIZE);
+    }
+
+    public BatchResult<Enrollment> addEnrollments(Collection<Enrollment> enrollments, int chunkSize) throws SQLException {
+        if (metrics == null) {
+            return addEnrollmentsUntimed(enrollments, chunkSize);
+        }
+        return timed("addEnrollments", INSERT_ENROLLMENT, () -> addEnrollmentsUntimed(enrollments, chunkSize),
+                     enrollments.size());
+    }
+
+    private BatchResult<Enrollment> addEnrollmentsUntimed(Collection<Enrollment> enrollments, int chunkSize)
+            throws SQLException {
+        // each chunk is staged as soon as it's written, so the caches still match the open transaction if
+        // a later chunk fails
+        return executeBatch(INSERT_ENROLLMENT,
+                enrollments, chunkSize, (enrollmentInsert, enrollment) -> {
+                    enrollmentInsert.setInt(1, enrollment.studentId());
+                    enrollmentInsert.setInt(2, enrollment.crn());
+                }, enrollment -> enrolled(enrollment.studentId(), enrollment.crn()));
+    }
+
+    @FunctionalInterface
+    private interface StatementBinder<T> {
+        void bind(PreparedStatement statement, T item) throws SQLException;
+    }
+
+    private <T> BatchResult<T> executeBatch(String sql, Collection<T> items, int chunkSize,
+                                            StatementBinder<T> binder) throws SQLException {
+        return executeBatch(sql, items, chunkSize, binder, null);
+    }
+
+    /**
+     * @param onWritten called with each row written, once its chunk is done - may be null
+     */
+    private <T> BatchResult<T> executeBatch(String sql, Collection<T> items, int chunkSize,
+                                            StatementBinder<T> binder, Consumer<T> onWritten) throws SQLException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        PreparedStatement statement = statementCache.prepare(sql);
+        BatchResult<T> result = new BatchResult<>();
+        List<T> chunk = new ArrayList<>(Math.min(chunkSize, items.size()));
+        int chunkStart = 0;
+        for (T item : items) {
+            chunk.add(item);
+            if (chunk.size() == chunkSize) {
+                executeChunk(statement, chunk, chunkStart, binder, onWritten, result);
+                chunkStart += chunk.size();
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            executeChunk(statement, chunk, chunkStart, binder, onWritten, result);
+        }
+        return result;
+    }
+
+    /**
+     * Runs one chunk inside a savepoint. Any failure other than a rejected row - including a binder that
+     * throws - rolls the chunk back to the savepoint before it's rethrown. Chunks written before it stay in
+     * the open transaction, and have already been passed to onWritten.
+     */
+    private <T> void executeChunk(PreparedStatement statement, List<T> chunk, int chunkStart,
+                                  StatementBinder<T> binder, Consumer<T> onWritten, BatchResult<T> result)
+            throws SQLException {
+        Savepoint savepoint = connection.setSavepoint();
+        List<T> written;
+        try {
+            written = writeChunk(statement, chunk, chunkStart, binder, savepoint, result);
+        } catch (SQLException | RuntimeException e) {
+            try {
+                statement.clearBatch();
+                connection.rollback(savepoint);
+                connection.releaseSavepoint(savepoint);
+            } catch (SQLException rollbackFailure) {
+                e.addSuppressed(rollbackFailure);
+            }
+            throw e;
+        }
+        connection.releaseSavepoint(savepoint);
+        if (onWritten != null) {
+            for (T item : written) {
+                onWritten.accept(item);
+            }
+        }
+    }
+
+    /**
+     * Writes the chunk as a JDBC batch. If any row violates a constraint, the chunk is rolled back to the
+     * savepoint and replayed row by row so only the offending rows are rejected.
+     * @return the rows written
+     */
+    private <T> List<T> writeChunk(PreparedStatement statement, List<T> chunk, int chunkStart,
+                                   StatementBinder<T> binder, Savepoint savepoint, BatchResult<T> result)
+            throws SQLException {
+        try {
+            for (T item : chunk) {
+                binder.bind(statement, item);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            result.addSucceeded(chunk.size());
+            return chunk;
+        } catch (SQLException e) {
+            if (!isConstraintViolation(e)) {
+                throw e;
+            }
+            statement.clearBatch();
+        }
+        connection.rollback(savepoint);
+        List<T> written = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            T item = chunk.get(i);
+            binder.bind(statement, item);
+            try {
+                statement.executeUpdate();
+                written.add(item);
+            } catch (SQLException rowFailure) {
+                if (!isConstraintViolation(rowFailure)) {
+                    throw rowFailure;
+                }
+                result.addConflict(chunkStart + i, item, rowFailure);
+            }
+        }
+        result.addSucceeded(written.size());
+        return written;
+    }
+
+    private static boolean isConstraintViolation(SQLException e) {
+        // SQLite reports extended result codes - the primary code is the low byte
+        return (e.getErrorCode() & 0xff) == SQLITE_CONSTRAINT;
+    }
+
+    private static final NamedQuery SELECT_STUDENTS = query("getStudents", true, """
+            SELECT StudentId, FirstName, LastName, ComputingID
+                FROM Students
+                ORDER BY StudentID;
+            """);
+
+    /**
+     * Gets a **shallow copy** of students - does not include course lists sorted by student ID
+     * @return a shallow copy of students without their course lists
+     */
+    public List<Student> getStudents() throws SQLException {
+        if (metrics == null) {
+            return getStudentsUntimed();
+        }
+        return timed("getStudents", SELECT_STUDENTS.sql(), () -> getStudentsUntimed());
+    }
+
+    private List<Student> getStudentsUntimed() throws SQLException {
+        return read(statements -> {
+            PreparedStatement selectStudent = statements.prepare(SELECT_STUDENTS.sql());
+            try (ResultSet resultSet = selectStudent.executeQuery()) {
+                List<Student> students = new ArrayList<>();
+                while(resultSet.next()) {
+                    students.add(readStudent(resultSet));
+                }
+                return students;
+            }
+        });
+    }
+
+    private static final NamedQuery SELECT_STUDENTS_PAGE = query("getStudents page", false, """
+            SELECT StudentId, FirstName, LastName, ComputingID
+                FROM Students
+                WHERE StudentId > ?
+                ORDER BY StudentId
+                LIMIT ?
+            """);
+
+    /**
+     * Gets one page of **shallow copies** of students sorted by student ID. Pages seek on the primary key rather
+     * than using OFFSET, so every page costs the same however deep it is.
+     * @param afterId the last student ID of the previous page, or 0 for the first page
+     * @param limit the most students to return
+     * @return up to limit students with IDs greater than afterId - fewer than limit means this is the last page
+     */
+    public List<Student> getStudents(int afterId, int limit) throws SQLException {
+        checkPageLimit(limit);
+        if (metrics == null) {
+            return getStudentsUntimed(afterId, limit);
+        }
+        return timed("getStudents page", SELECT_STUDENTS_PAGE.sql(), () -> getStudentsUntimed(afterId, limit),
+                     afterId, limit);
+    }
+
+    private List<Student> getStudentsUntimed(int afterId, int limit) throws SQLException {
+        return read(statements -> {
+            PreparedStatement selectStudents = statements.prepare(SELECT_STUDENTS_PAGE.sql());
+            selectStudents.setInt(1, afterId);
+            selectStudents.setInt(2, limit);
+            try (ResultSet resultSet = selectStudents.executeQuery()) {
+                List<Student> students = new ArrayList<>(Math.min(limit, 1024));
+                while (resultSet.next()) {
+                    students.add(readStudent(resultSet));
+                }
+                return students;
+            }
+        });
+    }
+
+    private static void checkPageLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page limit must be at least 1");
+        }
+    }
+
+    /**
+     * Streams **shallow copies** of students sorted by student ID straight off a forward-only cursor, so
+     * memory use doesn't depend on the number of students. The stream holds database resources (and, in
+     * pooled mode, a read connection) until it is closed - use it in a try-with-resources block.
+     * SQLExceptions raised while iterating are rethrown as {@link UncheckedSQLException}.
+     * @return an open stream of students
+     */
+    public Stream<Student> streamStudents() throws SQLException {
+        if (metrics == null) {
+            return streamRows(SELECT_STUDENTS.sql(), CourseDatabase::readStudent);
+        }
+        return timed("streamStudents", SELECT_STUDENTS.sql(),
+                     () -> streamRows(SELECT_STUDENTS.sql(), CourseDatabase::readStudent));
+    }
+
+    /**
+     * Receives each row of a scan - the ResultSet must not be kept or advanced
+     */
+    @FunctionalInterface
+    public interface RowVisitor {
+        void visit(ResultSet row) throws SQLException;
+    }
+
+    /**
+     * Visits every student row (StudentId, FirstName, LastName, ComputingID) sorted by student ID on a
+     * forward-only cursor, without creating Student objects
+     * @return the number of rows visited
+     */
+    public long scanStudentRows(RowVisitor visitor) throws SQLException {
+        if (metrics == null) {
+            return scanRows(SELECT_STUDENTS.sql(), visitor);
+        }
+        return timed("scanStudentRows", SELECT_STUDENTS.sql(),
+                     () -> scanRows(SELECT_STUDENTS.sql(), visitor));
+    }
+
+    private static final NamedQuery SCAN_COURSES = query("scanCourseRows", true, """
+            SELECT Crn, Subject, CourseNumber, Section, MeetingTime, Capacity
+                FROM Courses
+                ORDER BY Crn
+            """);
+
+    /**
+     * Visits every course row (Crn, Subject, CourseNumber, Section, MeetingTime, Capacity) sorted by CRN on a
+     * forward-only cursor, without creating Course objects
+     * @return the number of rows visited
+     */
+    public long scanCourseRows(RowVisitor visitor) throws SQLException {
+        if (metrics == null) {
+            return scanRows(SCAN_COURSES.sql(), visitor);
+        }
+        return timed("scanCourseRows", SCAN_COURSES.sql(),
+                     () -> scanRows(SCAN_COURSES.sql(), visitor));
+    }
+
+    private static final NamedQuery SCAN_ENROLLMENTS = query("scanEnrollmentRows", true, """
+            SELECT StudentID, CRN
+                FROM Enrollments
+                ORDER BY StudentID, CRN
+            """);
+
+    /**
+     * Visits every enrollment row (StudentID, CRN) sorted by student ID then CRN on a forward-only cursor
+     * @return the number of rows visited
+     */
+    public long scanEnrollmentRows(RowVisitor visitor) throws SQLException {
+        if (metrics == null) {
+            return scanRows(SCAN_ENROLLMENTS.sql(), visitor);
+        }
+        return timed("scanEnrollmentRows", SCAN_ENROLLMENTS.sql(),
+                     () -> scanRows(SCAN_ENROLLMENTS.sql(), visitor));
+    }
+
+    /**
+     * The in-memory enrollment index, loaded with one scan of the Enrollments table on first use. After
+     * that it follows addEnrollment(s), removeEnrollment, clearTables and dropTables, publishing changes at
+     * commit. The scan runs on the writer connection - even in pooled mode - so enrollments written earlier in
+     * the open transaction aren't missed; until that transaction ends, snapshots may include them, and a
+     * rollback reloads the index.
+     */
+    public EnrollmentIndex getEnrollmentIndex() throws SQLException {
+        if (enrollmentIndex == null) {
+            enrollmentIndex = EnrollmentIndex.empty();
+            reloadEnrollmentIndex();
+        }
+        return enrollmentIndex;
+    }
+
+    private void reloadEnrollmentIndex() throws SQLException {
+        EnrollmentIndex.PairBuffer enrollments = new EnrollmentIndex.PairBuffer();
+        // a pooled reader would miss enrollments the writer hasn't committed yet, and as the index is only
+        // staged into once loaded, they'd never show up
+        RowVisitor load = row -> enrollments.add(row.getInt("StudentID"), row.getInt("CRN"));
+        if (metrics == null) {
+            scanRows(SCAN_ENROLLMENTS.sql(), load, true);
+        } else {
+            timed("getEnrollmentIndex", SCAN_ENROLLMENTS.sql(), () -> scanRows(SCAN_ENROLLMENTS.sql(), load, true));
+        }
+        enrollmentIndex.reset(enrollments);
+        enrollmentIndexLoadedInTransaction = true;
+    }
+
+    private long scanRows(String sql, RowVisitor visitor) throws SQLException {
+        return scanRows(sql, visitor, false);
+    }
+
+    /**
+     * @param fromWriter scan on the writer connection even in pooled mode, to include uncommitted rows
+     */
+    private long scanRows(String sql, RowVisitor visitor, boolean fromWriter) throws SQLException {
+        ReadConnectionPool.PooledConnection reader = readPool == null || fromWriter ? null : readPool.acquire();
+        Connection source = reader == null ? connection : reader.connection();
+        try (reader;
+             PreparedStatement statement = source.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                                                                   ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(config.getFetchSize());
+            long rows = 0;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    visitor.visit(resultSet);
+                    rows++;
+                }
+            }
+            return rows;
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(ResultSet resultSet) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface ParameterBinder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    private <T> Stream<T> streamRows(String sql, RowMapper<T> rowMapper) throws SQLException {
+        return streamRows(sql, statement -> { }, rowMapper);
+    }
+
+    private <T> Stream<T> streamRows(String sql, ParameterBinder parameters, RowMapper<T> rowMapper)
+            throws SQLException {
+        // a dedicated statement rather than a cached one, since the cursor stays open while the caller iterates
+        ReadConnectionPool.PooledConnection reader = readPool == null ? null : readPool.acquire();
+        Connection source = reader == null ? connection : reader.connection();
+        PreparedStatement statement = null;
+        ResultSet resultSet;
+        try {
+            statement = source.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(config.getFetchSize());
+            parameters.bind(statement);
+            resultSet = statement.executeQuery();
+        } catch (SQLException e) {
+            closeStreamResources(null, statement, reader);
+            throw e;
+        }
+
+        PreparedStatement openStatement = statement;
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!resultSet.next()) {
+                        return false;
+                    }
+                    action.accept(rowMapper.map(resultSet));
+                    return true;
+                } catch (SQLException e) {
+                    throw new UncheckedSQLException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(() -> {
+            try {
+                closeStreamResources(resultSet, openStatement, reader);
+            } catch (SQLException e) {
+                throw new UncheckedSQLException(e);
+            }
+        });
+    }
+
+    private static void closeStreamResources(ResultSet resultSet, PreparedStatement statement,
+                                             ReadConnectionPool.PooledConnection reader) throws SQLException {
+        try (reader; statement; resultSet) {
+            // try-with-resources closes in reverse order and skips nulls
+        }
+    }
+
+    private static final NamedQuery SELECT_CHANGES = query("changesSince", false, """
+            SELECT Seq, TableName, Operation, StudentID, CRN
+                FROM ChangeLog
+                WHERE Seq > ?
+                ORDER BY Seq
+            """);
+
+    /**
+     * Streams the change feed after the given position, oldest first, off a forward-only cursor. Consumers
+     * remember the sequence of the last change they processed and pass it to the next call. Requires
+     * {@link CourseDatabaseConfig.Builder#changeFeed}. The stream must be closed, like
+     * {@link #streamStudents()}. In pooled mode only committed changes are visible.
+     * @param sequence the last sequence already seen, 0 to read the whole feed
+     */
+    public Stream<Change> changesSince(long sequence) throws SQLException {
+        requireChangeFeed();
+        if (metrics == null) {
+            return streamRows(SELECT_CHANGES.sql(), statement -> statement.setLong(1, sequence),
+                              CourseDatabase::readChange);
+        }
+        return timed("changesSince", SELECT_CHANGES.sql(),
+                     () -> streamRows(SELECT_CHANGES.sql(), statement -> statement.setLong(1, sequence),
+                                      CourseDatabase::readChange),
+                     sequence);
+    }
+
+    private static final NamedQuery SELECT_LATEST_CHANGE = query("getLatestChangeSequence", false, """
+            SELECT Max(Seq) AS LatestSeq FROM ChangeLog
+            """);
+
+    /**
+     * @return the sequence of the newest change, or 0 if the feed is empty - where a new consumer that
+     * already has a full copy of the tables starts reading
+     */
+    public long getLatestChangeSequence() throws SQLException {
+        requireChangeFeed();
+        if (metrics == null) {
+            return getLatestChangeSequenceUntimed();
+        }
+        return timed("getLatestChangeSequence", SELECT_LATEST_CHANGE.sql(), () -> getLatestChangeSequenceUntimed());
+    }
+
+    private long getLatestChangeSequenceUntimed() throws SQLException {
+        return read(statements -> {
+            try (ResultSet resultSet = statements.prepare(SELECT_LATEST_CHANGE.sql()).executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong("LatestSeq");
+            }
+        });
+    }
+
+    /**
+     * Shrinks the change feed by dropping every change that a later change to the same row supersedes.
+     * A consumer resuming from any sequence still ends up with the latest state of every row changed
+     * after it, it just skips the intermediate states.
+     * @param dropDeletesBefore deletions with a sequence up to this are dropped as well, once every
+     *                          consumer has read past it - 0 keeps all of them
+     * @return the number of changes removed
+     */
+    public int compactChangeLog(long dropDeletesBefore) throws SQLException {
+        requireChangeFeed();
+        if (metrics == null) {
+            return compactChangeLogUntimed(dropDeletesBefore);
+        }
+        return timed("compactChangeLog", null, () -> compactChangeLogUntimed(dropDeletesBefore), dropDeletesBefore);
+    }
+
+    private int compactChangeLogUntimed(long dropDeletesBefore) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            int removed = statement.executeUpdate("""
+                DELETE FROM ChangeLog
+                    WHERE Seq NOT IN (
+                        SELECT Max(Seq) FROM ChangeLog
+                            GROUP BY TableName, StudentID, CRN);
+                """);
+            if (dropDeletesBefore > 0) {
+                try (PreparedStatement deleteTombstones = connection.prepareStatement("""
+                    DELETE FROM ChangeLog
+                        WHERE Seq <= ? AND Operation = 'DELETE';
+                    """)) {
+                    deleteTombstones.setLong(1, dropDeletesBefore);
+                    removed += deleteTombstones.executeUpdate();
+                }
+            }
+            return removed;
+        }
+    }
+
+    private void requireChangeFeed() {
+        if (!config.isChangeFeed()) {
+            throw new IllegalStateException("The change feed is not enabled - see CourseDatabaseConfig.Builder");
+        }
+    }
+
+    private static Change readChange(ResultSet resultSet) throws SQLException {
+        return new Change(resultSet.getLong("Seq"),
+                          Change.Table.fromTableName(resultSet.getString("TableName")),
+                          Change.Operation.valueOf(resultSet.getString("Operation")),
+                          resultSet.getInt("StudentID"),
+                          resultSet.getInt("CRN"));
+    }
+
+    /**
+     * Gets a **shallow copy** of a student, served from the student cache when it is enabled
+     * @param studentID the student's ID
+     * @return the student, or empty if there is no such student
+     */
+    public Optional<Student> getStudent(int studentID) throws SQLException {
+        if (metrics == null) {
+            return getStudentUntimed(studentID);
+        }
+        return timed("getStudent", SELECT_STUDENT.sql(), () -> getStudentUntimed(studentID), studentID);
+    }
+
+    private Optional<Student> getStudentUntimed(int studentID) throws SQLException {
+        if (studentCache == null) {
+            return selectStudent(studentID);
+        }
+        Student cached = studentCache.get(studentID);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        long epoch = studentCache.epoch();
+        Optional<Student> student = selectStudent(studentID);
+        student.ifPresent(loaded -> studentCache.putIfUnchanged(studentID, loaded, epoch));
+        return student;
+    }
+
+    private static final NamedQuery SELECT_STUDENT = query("getStudent", false, """
+            SELECT StudentId, FirstName, LastName, ComputingID
+                FROM Students
+                WHERE StudentID = ?
+            """);
+
+    private Optional<Student> selectStudent(int studentID) throws SQLException {
+        return read(statements -> {
+            PreparedStatement selectStudent = statements.prepare(SELECT_STUDENT.sql());
+            selectStudent.setInt(1, studentID);
+
+            try (ResultSet resultSet = selectStudent.executeQuery()) {
+                // check if result set is empty - if it is, .next() returns false
+                if (!resultSet.next()) {
+                    return Optional.empty();
+                }
+                // otherwise .next() is pointing at the student
+                return Optional.of(readStudent(resultSet));
+            }
+        });
+    }
+
+    /**
+     * Gets a course by CRN, served from the course cache when it is enabled. The course's student list is
+     * not loaded.
+     * @param crn the course's CRN
+     * @return the course, or empty if there is no such course
+     */
+    public Optional<Course> getCourse(int crn) throws SQLException {
+        if (metrics == null) {
+            return getCourseUntimed(crn);
+        }
+        return timed("getCourse", SELECT_COURSE.sql(), () -> getCourseUntimed(crn), crn);
+    }
+
+    private Optional<Course> getCourseUntimed(int crn) throws SQLException {
+        if (courseCache == null) {
+            return selectCourse(crn);
+        }
+        Course cached = courseCache.get(crn);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        long epoch = courseCache.epoch();
+        Optional<Course> course = selectCourse(crn);
+        course.ifPresent(loaded -> courseCache.putIfUnchanged(crn, loaded, epoch));
+        return course;
+    }
+
+    private static final NamedQuery SELECT_COURSE = query("getCourse", false, """
+            SELECT Crn, Subject, CourseNumber, Section, MeetingTime, Capacity
+                FROM Courses
+                WHERE Crn = ?
+            """);
+
+    private Optional<Course> selectCourse(int crn) throws SQLException {
+        return read(statements -> {
+            PreparedStatement selectCourse = statements.prepare(SELECT_COURSE.sql());
+            selectCourse.setInt(1, crn);
+            try (ResultSet resultSet = selectCourse.executeQuery()) {
+                if (!resultSet.next()) {
+                    return Optional.empty();
+                }
+                return Optional.of(readCourse(resultSet));
+            }
+        });
+    }
+
+    private static final NamedQuery SELECT_STUDENTS_BY_COURSE = query("getStudentsByCourse", false, """
+            SELECT s.StudentId, s.FirstName, s.LastName, s.ComputingID
+                FROM Enrollments e
+                JOIN Students s ON s.StudentId = e.StudentID
+                WHERE e.CRN = ?
+                ORDER BY s.StudentId
+            """);
+
+    private static final NamedQuery SEARCH_STUDENTS = query("searchStudents", false, """
+            SELECT rowid AS StudentId, FirstName, LastName, ComputingID
+                FROM StudentSearch
+                WHERE StudentSearch MATCH ?
+                ORDER BY rank, rowid
+                LIMIT ?
+            """);
+
+    /**
+     * Searches students by name and computing ID. Every word of the query must match the start of a word in
+     * the student's first name, last name or computing ID, so "jo do" finds John Doe, and "abc" finds abc2def.
+     * @param query words to search for - punctuation is ignored
+     * @param limit the most students to return
+     * @return **shallow copies** of the matching students, best match (by bm25) first
+     */
+    public List<Student> searchStudents(String query, int limit) throws SQLException {
+        checkPageLimit(limit);
+        String match = toPrefixMatch(query);
+        if (match.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (metrics == null) {
+            return searchStudentsUntimed(match, limit);
+        }
+        return timed("searchStudents", SEARCH_STUDENTS.sql(), () -> searchStudentsUntimed(match, limit), query, limit);
+    }
+
+    private List<Student> searchStudentsUntimed(String match, int limit) throws SQLException {
+        return read(statements -> {
+            PreparedStatement searchStudents = statements.prepare(SEARCH_STUDENTS.sql());
+            searchStudents.setString(1, match);
+            searchStudents.setInt(2, limit);
+            try (ResultSet resultSet = searchStudents.executeQuery()) {
+                List<Student> students = new ArrayList<>();
+                while (resultSet.next()) {
+                    students.add(readStudent(resultSet));
+                }
+                return students;
+            }
+        });
+    }
+
+    /**
+     * Turns free text into an FTS5 query of quoted prefix terms, e.g. {@code jo O'Do} into {@code "jo"* "o"* "do"*},
+     * splitting on the same non-alphanumerics the unicode61 tokenizer does so user input can't inject FTS syntax
+     */
+    private static String toPrefixMatch(String query) {
+        StringJoiner match = new StringJoiner(" ");
+        for (String word : query.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                match.add('"' + word + "\"*");
+            }
+        }
+        return match.toString();
+    }
+
+    private static final NamedQuery SELECT_STUDENT_BY_COMPUTING_ID = query("getStudentByComputingID", false, """
+            SELECT StudentId, FirstName, LastName, ComputingID
+                FROM Students
+                WHERE ComputingID = ?
+            """);
+
+    /**
+     * Gets a **shallow copy** of the student with the given computing ID
+     * @param computingID the student's computing ID, e.g. "abc2def"
+     * @return the student, or empty if there is no such student
+     */
+    public Optional<Student> getStudentByComputingID(String computingID) throws SQLException {
+        if (metrics == null) {
+            return getStudentByComputingIDUntimed(computingID);
+        }
+        return timed("getStudentByComputingID", SELECT_STUDENT_BY_COMPUTING_ID.sql(),
+                     () -> getStudentByComputingIDUntimed(computingID), computingID);
+    }
+
+    private Optional<Student> getStudentByComputingIDUntimed(String computingID) throws SQLException {
+        return read(statements -> {
+            PreparedStatement selectStudent = statements.prepare(SELECT_STUDENT_BY_COMPUTING_ID.sql());
+            selectStudent.setString(1, computingID);
+            try (ResultSet resultSet = selectStudent.executeQuery()) {
+                if (!resultSet.next()) {
+                    return Optional.empty();
+                }
+                return Optional.of(readStudent(resultSet));
+            }
+        });
+    }
+
+    private static final NamedQuery SELECT_STUDENTS_BY_LAST_NAME = query("getStudentsByLastName", false, """
+            SELECT StudentId, FirstName, LastName, ComputingID
+                FROM Students
+                WHERE LastName = ?
+                ORDER BY LastName, FirstName
+            """);
+
+    /**
+     * Gets **shallow copies** of the students with the given last name, sorted by first name
+     */
+    public List<Student> getStudentsByLastName(String lastName) throws SQLException {
+        if (metrics == null) {
+            return getStudentsByLastNameUntimed(lastName);
+        }
+        return timed("getStudentsByLastName", SELECT_STUDENTS_BY_LAST_NAME.sql(),
+                     () -> getStudentsByLastNameUntimed(lastName), lastName);
+    }
+
+    private List<Student> getStudentsByLastNameUntimed(String lastName) throws SQLException {
+        return read(statements -> {
+            PreparedStatement selectStudents = statements.prepare(SELECT_STUDENTS_BY_LAST_NAME.sql());
+            selectStudents.setString(1, lastName);
+            try (ResultSet resultSet = selectStudents.executeQuery()) {
+                List<Student> students = new ArrayList<>();
+                while (resultSet.next()) {
+                    students.add(readStudent(resultSet));
+                }
+                return students;
+            }
+        });
+    }
+
+    public List<Student> getStudentsByCourse(Course course) throws SQLException {
+        if (metrics == null) {
+            return getStudentsByCourseUntimed(course);
+        }
+        return timed("getStudentsByCourse", SELECT_STUDENTS_BY_COURSE.sql(), () -> getStudentsByCourseUntimed(course),
+                     course.getCrn());
+    }
+
+    private List<Student> getStudentsByCourseUntimed(Course course) throws SQLException {
+        return read(statements -> {
+            PreparedStatement selectEnrolledStudents = statements.prepare(SELECT_STUDENTS_BY_COURSE.sql());
+            selectEnrolledStudents.setInt(1, course.getCrn());
+            try (ResultSet resultSet = selectEnrolledStudents.executeQuery()) {
+                List<Student> students = new ArrayList<>();
+                while(resultSet.next()) {
+                    students.add(readStudent(resultSet));
+                }
+                return students;
+            }
+        });
+    }
+
+    private static final NamedQuery SELECT_STUDENTS_BY_COURSE_PAGE = query("getStudentsByCourse page", false, """
+            SELECT s.StudentId, s.FirstName, s.LastName, s.ComputingID
+                FROM Enrollments e
+                JOIN Students s ON s.StudentId = e.StudentID
+                WHERE e.CRN = ? AND e.StudentID > ?
+                ORDER BY e.StudentID
+                LIMIT ?
+            """);
+
+    /**
+     * Gets one page of a course's roster sorted by student ID, seeking on the EnrollmentsByCrn index
+     * @param afterId the last student ID of the previous page, or 0 for the first page
+     * @param limit the most students to return
+     * @return up to limit enrolled students with IDs greater than afterId
+     */
+    public List<Student> getStudentsByCourse(Course course, int afterId, int limit) throws SQLException {
+        checkPageLimit(limit);
+        if (metrics == null) {
+            return getStudentsByCourseUntimed(course, afterId, limit);
+        }
+        return timed("getStudentsByCourse page", SELECT_STUDENTS_BY_COURSE_PAGE.sql(),
+                     () -> getStudentsByCourseUntimed(course, afterId, limit), course.getCrn(), afterId, limit);
+    }
+
+    private List<Student> getStudentsByCourseUntimed(Course course, int afterId, int limit) throws SQLException {
+        return read(statements -> {
+            PreparedStatement selectEnrolledStudents = statements.prepare(SELECT_STUDENTS_BY_COURSE_PAGE.sql());
+            selectEnrolledStudents.setInt(1, course.getCrn());
+            selectEnrolledStudents.setInt(2, afterId);
+            selectEnrolledStudents.setInt(3, limit);
+            try (ResultSet resultSet = selectEnrolledStudents.executeQuery()) {
+                List<Student> students = new ArrayList<>(Math.min(limit, 1024));
+                while (resultSet.next()) {
+                    students.add(readStudent(resultSet));
+                }
+                return students;
+            }
+        });
+    }
+
+    private static final NamedQuery SELECT_COURSES_BY_STUDENT = query("getCoursesByStudent", false, """
+            SELECT c.Crn, c.Subject, c.CourseNumber, c.Section, c.MeetingTime, c.Capacity
+                FROM Enrollments e
+                JOIN Courses c ON c.Crn = e.CRN
+                WHERE e.StudentID = ?
+                ORDER BY e.CRN
+            """);
+
+    /**
+     * Gets the courses a student is enrolled in. The courses' student lists are not loaded.
+     * @param student the student to look up
+     * @return the student's courses sorted by CRN
+     */
+    public List<Course> getCoursesByStudent(Student student) throws SQLException {
+        if (metrics == null) {
+            return getCoursesByStudentUntimed(student);
         }
+        return timed("getCoursesByStudent", SELECT_COURSES_BY_STUDENT.sql(), () -> getCoursesByStudentUntimed(student),
+                     student.getId());
+    }
+
+    private List<Course> getCoursesByStudentUntimed(Student student) throws SQLException {
+        return read(statements -> {
+            PreparedStatement selectCourses = statements.prepare(SELECT_COURSES_BY_STUDENT.sql());
+            selectCourses.setInt(1, student.getId());
+            try (ResultSet resultSet = selectCourses.executeQuery()) {
+                List<Course> courses = new ArrayList<>();
+                while (resultSet.next()) {
+                    courses.add(readCourse(resultSet));
+                }
+                return courses;
+            }
+        });
+    }
+
+    private static final NamedQuery SELECT_STUDENTS_BY_COURSES = query("getStudentsByCourses", false, """
+            SELECT e.CRN, s.StudentId, s.FirstName, s.LastName, s.ComputingID
+                FROM Enrollments e
+                JOIN Students s ON s.StudentId = e.StudentID
+                WHERE e.CRN IN (SELECT value FROM json_each(?))
+                ORDER BY e.CRN, s.StudentId
+            """);
+
+    /**
+     * Gets **shallow copies** of the students enrolled in each of the given courses with a single query
+     * @param courses the courses to look up
+     * @return a map from each course's CRN to its students sorted by student ID - courses without
+     * enrollments map to an empty list
+     */
+    public Map<Integer, List<Student>> getStudentsByCourses(Collection<Course> courses) throws SQLException {
+        if (metrics == null) {
+            return getStudentsByCoursesUntimed(courses);
+        }
+        return timed("getStudentsByCourses", SELECT_STUDENTS_BY_COURSES.sql(),
+                     () -> getStudentsByCoursesUntimed(courses), courses.size());
+    }
+
+    private Map<Integer, List<Student>> getStudentsByCoursesUntimed(Collection<Course> courses) throws SQLException {
+        Map<Integer, List<Student>> studentsByCrn = new LinkedHashMap<>();
+        StringJoiner crnArray = new StringJoiner(",", "[", "]");
+        for (Course course : courses) {
+            if (studentsByCrn.putIfAbsent(course.getCrn(), new ArrayList<>()) == null) {
+                crnArray.add(Integer.toString(course.getCrn()));
+            }
+        }
+        if (studentsByCrn.isEmpty()) {
+            return studentsByCrn;
+        }
+        return read(statements -> {
+            // the CRNs are bound as one JSON array so the statement text (and cache entry) doesn't vary with size
+            PreparedStatement selectEnrolledStudents = statements.prepare(SELECT_STUDENTS_BY_COURSES.sql());
+            selectEnrolledStudents.setString(1, crnArray.toString());
+            try (ResultSet resultSet = selectEnrolledStudents.executeQuery()) {
+                while(resultSet.next()) {
+                    studentsByCrn.get(resultSet.getInt("CRN")).add(readStudent(resultSet));
+                }
+            }
+            return studentsByCrn;
+        });
+    }
+
+    private static final NamedQuery COUNT_BY_CRN = query("enrollmentCountsByCrn", true, """
+            SELECT CRN, COUNT(*) AS Enrolled
+                FROM Enrollments
+                GROUP BY CRN
+                ORDER BY CRN
+            """);
+
+    private static final NamedQuery SUMMARY_BY_CRN = query("enrollmentCountsByCrn summary", true, """
+            SELECT Crn AS CRN, Enrolled
+                FROM EnrollmentSummary
+                WHERE Enrolled > 0
+                ORDER BY Crn
+            """);
+
+    /**
+     * Counts enrollments per course in the database, without loading any students
+     * @return enrolled student counts by CRN - courses without enrollments are left out (and so count as 0)
+     */
+    public IntCountMap enrollmentCountsByCrn() throws SQLException {
+        NamedQuery query = config.isEnrollmentSummary() ? SUMMARY_BY_CRN : COUNT_BY_CRN;
+        if (metrics == null) {
+            return enrollmentCountsByCrnUntimed(query);
+        }
+        return timed("enrollmentCountsByCrn", query.sql(), () -> enrollmentCountsByCrnUntimed(query));
+    }
+
+    private IntCountMap enrollmentCountsByCrnUntimed(NamedQuery query) throws SQLException {
+        return read(statements -> {
+            PreparedStatement countEnrollments = statements.prepare(query.sql());
+            try (ResultSet resultSet = countEnrollments.executeQuery()) {
+                IntCountMap.Builder counts = IntCountMap.builder();
+                while (resultSet.next()) {
+                    counts.add(resultSet.getInt("CRN"), resultSet.getInt("Enrolled"));
+                }
+                return counts.build();
+            }
+        });
+    }
+
+    private static final NamedQuery COUNT_BY_SUBJECT = query("enrollmentCountsBySubject", true, """
+            SELECT c.Subject AS GroupKey, COUNT(*) AS Enrolled
+                FROM Enrollments e
+                JOIN Courses c ON c.Crn = e.CRN
+                GROUP BY c.Subject
+                ORDER BY c.Subject
+            """);
+
+    private static final NamedQuery SUMMARY_BY_SUBJECT = query("enrollmentCountsBySubject summary", true, """
+            SELECT c.Subject AS GroupKey, SUM(s.Enrolled) AS Enrolled
+                FROM EnrollmentSummary s
+                JOIN Courses c ON c.Crn = s.Crn
+                WHERE s.Enrolled > 0
+                GROUP BY c.Subject
+                ORDER BY c.Subject
+            """);
+
+    /**
+     * Counts enrollments per subject in the database
+     * @return enrolled student counts by subject - subjects without enrollments are left out
+     */
+    public StringCountMap enrollmentCountsBySubject() throws SQLException {
+        return countEnrollmentsBy("enrollmentCountsBySubject", config.isEnrollmentSummary()
+                ? SUMMARY_BY_SUBJECT : COUNT_BY_SUBJECT);
+    }
+
+    private static final NamedQuery COUNT_BY_MEETING_TIME = query("enrollmentCountsByMeetingTime", true, """
+            SELECT c.MeetingTime AS GroupKey, COUNT(*) AS Enrolled
+                FROM Enrollments e
+                JOIN Courses c ON c.Crn = e.CRN
+                GROUP BY c.MeetingTime
+                ORDER BY c.MeetingTime
+            """);
+
+    private static final NamedQuery SUMMARY_BY_MEETING_TIME = query("enrollmentCountsByMeetingTime summary", true, """
+            SELECT c.MeetingTime AS GroupKey, SUM(s.Enrolled) AS Enrolled
+                FROM EnrollmentSummary s
+                JOIN Courses c ON c.Crn = s.Crn
+                WHERE s.Enrolled > 0
+                GROUP BY c.MeetingTime
+                ORDER BY c.MeetingTime
+            """);
+
+    /**
+     * Counts enrollments per meeting time in the database. Meeting times are grouped by their text as stored,
+     * e.g. "TR 14:00 - 15:15" and "TR 14:00-15:15" are counted separately.
+     * @return enrolled student counts by meeting time
+     */
+    public StringCountMap enrollmentCountsByMeetingTime() throws SQLException {
+        return countEnrollmentsBy("enrollmentCountsByMeetingTime", config.isEnrollmentSummary()
+                ? SUMMARY_BY_MEETING_TIME : COUNT_BY_MEETING_TIME);
+    }
+
+    private StringCountMap countEnrollmentsBy(String operation, NamedQuery query) throws SQLException {
+        if (metrics == null) {
+            return countEnrollmentsByUntimed(query);
+        }
+        return timed(operation, query.sql(), () -> countEnrollmentsByUntimed(query));
+    }
+
+    private StringCountMap countEnrollmentsByUntimed(NamedQuery query) throws SQLException {
+        return read(statements -> {
+            PreparedStatement countEnrollments = statements.prepare(query.sql());
+            try (ResultSet resultSet = countEnrollments.executeQuery()) {
+                StringCountMap.Builder counts = StringCountMap.builder();
+                while (resultSet.next()) {
+                    counts.add(resultSet.getString("GroupKey"), resultSet.getInt("Enrolled"));
+                }
+                return counts.build();
+            }
+        });
+    }
+
+    /**
+     * Loads every student, course and enrollment as a fully wired object graph
+     * @return the schedule with each Student's courses and each Course's students filled in
+     */
+    public Schedule loadSchedule() throws SQLException {
+        return loadSchedule(null);
+    }
+
+    private static final NamedQuery SELECT_SCHEDULE_COURSES = query("loadSchedule courses", true, """
+            SELECT Crn, Subject, CourseNumber, Section, MeetingTime, Capacity
+                FROM Courses
+                WHERE ?1 IS NULL OR Subject = ?1
+                ORDER BY Crn
+            """);
+
+    private static final NamedQuery SELECT_SCHEDULE_STUDENTS = query("loadSchedule students", true, """
+            SELECT StudentId, FirstName, LastName, ComputingID
+                FROM Students
+                WHERE ?1 IS NULL OR StudentId IN (
+                    SELECT e.StudentID FROM Enrollments e
+                        JOIN Courses c ON c.Crn = e.CRN
+                        WHERE c.Subject = ?1)
+                ORDER BY StudentId
+            """);
+
+    private static final NamedQuery SELECT_SCHEDULE_ENROLLMENTS = query("loadSchedule enrollments", true, """
+            SELECT e.StudentID, e.CRN
+                FROM Enrollments e
+                JOIN Courses c ON c.Crn = e.CRN
+                WHERE ?1 IS NULL OR c.Subject = ?1
+                ORDER BY e.StudentID, e.CRN
+            """);
+
+    /**
+     * Loads the courses in one subject, the students enrolled in them, and those enrollments as a fully
+     * wired object graph. Students' course lists only contain courses within the subject.
+     * @param subject the subject to load, e.g. "CS", or null to load everything
+     * @return the schedule with each Student's courses and each Course's students filled in
+     */
+    public Schedule loadSchedule(String subject) throws SQLException {
+        if (metrics == null) {
+            return loadScheduleUntimed(subject);
+        }
+        return timed("loadSchedule", null, () -> loadScheduleUntimed(subject), subject);
+    }
+
+    private Schedule loadScheduleUntimed(String subject) throws SQLException {
+        return readSnapshot(statements -> {
+            // three forward scans, wired through identity maps - no per-entity lookups
+            Map<Integer, Course> coursesByCrn = new LinkedHashMap<>();
+            PreparedStatement selectCourses = statements.prepare(SELECT_SCHEDULE_COURSES.sql());
+            selectCourses.setString(1, subject);
+            try (ResultSet resultSet = selectCourses.executeQuery()) {
+                while (resultSet.next()) {
+                    Course course = readCourse(resultSet);
+                    coursesByCrn.put(course.getCrn(), course);
+                }
+            }
+
+            Map<Integer, Student> studentsById = new LinkedHashMap<>();
+            PreparedStatement selectStudents = statements.prepare(SELECT_SCHEDULE_STUDENTS.sql());
+            selectStudents.setString(1, subject);
+            try (ResultSet resultSet = selectStudents.executeQuery()) {
+                while (resultSet.next()) {
+                    Student student = readStudent(resultSet);
+                    studentsById.put(student.getId(), student);
+                }
+            }
+
+            PreparedStatement selectEnrollments = statements.prepare(SELECT_SCHEDULE_ENROLLMENTS.sql());
+            selectEnrollments.setString(1, subject);
+            try (ResultSet resultSet = selectEnrollments.executeQuery()) {
+                while (resultSet.next()) {
+                    Student student = studentsById.get(resultSet.getInt("StudentID"));
+                    Course course = coursesByCrn.get(resultSet.getInt("CRN"));
+                    student.addCourse(course);
+                    course.addStudent(student);
+                }
+            }
+            return new Schedule(studentsById, coursesByCrn);
+        });
+    }
+
+    @FunctionalInterface
+    private interface SqlFunction<T> {
+        T apply(StatementCache statements) throws SQLException;
+    }
+
+    /**
+     * Runs a query on a pooled read connection in pooled mode, otherwise on the writer connection. Pooled
+     * reads only see committed data.
+     */
+    private <T> T read(SqlFunction<T> query) throws SQLException {
+        if (readPool == null) {
+            return query.apply(statementCache);
+        }
+        try (ReadConnectionPool.PooledConnection reader = readPool.acquire()) {
+            return query.apply(reader.statements());
+        }
+    }
+
+    /**
+     * Like {@link #read(SqlFunction)}, but every statement the query runs sees the same snapshot
+     */
+    private <T> T readSnapshot(SqlFunction<T> query) throws SQLException {
+        if (readPool == null) {
+            // the writer connection is always inside a transaction
+            return query.apply(statementCache);
+        }
+        try (ReadConnectionPool.PooledConnection reader = readPool.acquire()) {
+            Connection readerConnection = reader.connection();
+            readerConnection.setAutoCommit(false);
+            try {
+                return query.apply(reader.statements());
+            } finally {
+                readerConnection.rollback();
+                readerConnection.setAutoCommit(true);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlSupplier<T> {
+        T get() throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface SqlAction {
+        void run() throws SQLException;
+    }
+
+    /**
+     * Runs a public operation, reporting its latency and row count to the configured metrics and, past
+     * the slow-query threshold, its SQL and parameters as well. Callers check for {@code metrics == null} first
+     * and run the untimed body directly, so with metrics disabled no lambda or parameter array is created.
+     * @param sql the operation's main statement, or null if it has none
+     * @param parameters the values bound to that statement
+     */
+    private <T> T timed(String operation, String sql, SqlSupplier<T> body, Object... parameters)
+            throws SQLException {
+        if (metrics == null) {
+            return body.get();
+        }
+        long started = System.nanoTime();
+        boolean failed = true;
+        T result = null;
+        try {
+            result = body.get();
+            failed = false;
+            return result;
+        } finally {
+            long elapsedNanos = System.nanoTime() - started;
+            metrics.recordOperation(operation, elapsedNanos, failed ? -1 : rowCount(result), failed);
+            if (slowQueryNanos > 0 && elapsedNanos >= slowQueryNanos) {
+                metrics.recordSlowQuery(new CourseDatabaseMetrics.SlowQuery(operation, sql,
+                        Collections.unmodifiableList(Arrays.asList(parameters)), Duration.ofNanos(elapsedNanos)));
+            }
+        }
+    }
+
+    private void timedAction(String operation, String sql, SqlAction body, Object... parameters)
+            throws SQLException {
+        timed(operation, sql, () -> {
+            body.run();
+            return null;
+        }, parameters);
+    }
+
+    /**
+     * Rows returned by a read, or -1 for results that aren't rows (writes, streams)
+     */
+    private static long rowCount(Object result) {
+        if (result instanceof Collection<?> rows) {
+            return rows.size();
+        }
+        if (result instanceof Optional<?> row) {
+            return row.isPresent() ? 1 : 0;
+        }
+        if (result instanceof Map<?, ?> groups) {
+            long rows = 0;
+            for (Object group : groups.values()) {
+                rows += group instanceof Collection<?> collection ? collection.size() : 1;
+            }
+            return rows;
+        }
+        if (result instanceof Schedule schedule) {
+            return schedule.getStudents().size() + schedule.getCourses().size();
+        }
+        if (result instanceof Long scanned) {
+            return scanned;
+        }
+        return -1;
+    }
+
+    private static Student readStudent(ResultSet resultSet) throws SQLException {
+        int studentId = resultSet.getInt("StudentID");
+        String firstName = resultSet.getString("FirstName");
+        String lastName = resultSet.getString("LastName");
+        String computingID = resultSet.getString("ComputingID");
+        return new Student(studentId, firstName, lastName, computingID);
+    }
+
+    private static void bindCapacity(PreparedStatement statement, int index, int capacity) throws SQLException {
+        if (capacity == Course.UNLIMITED) {
+            statement.setNull(index, Types.INTEGER);
+        } else {
+            statement.setInt(index, capacity);
+        }
+    }
+
+    private static Course readCourse(ResultSet resultSet) throws SQLException {
+        int crn = resultSet.getInt("Crn");
+        String subject = resultSet.getString("Subject");
+        int courseNumber = resultSet.getInt("CourseNumber");
+        int section = resultSet.getInt("Section");
+        String meetingTime = resultSet.getString("MeetingTime");
+        int capacity = resultSet.getInt("Capacity");
+        if (resultSet.wasNull()) {
+            capacity = Course.UNLIMITED;
+        }
+        return new Course(crn, subject, courseNumber, section, meetingTime, capacity);
+    }
+
+    private static Student copyOf(Student student) {
+        return new Student(student.getId(), student.getFirstName(), student.getLastName(), student.getComputingID());
+    }
+
+    private static Course copyOf(Course course) {
+        return new Course(course.getCrn(), course.getSubject(), course.getCourseNumber(), course.getSectionNumber(),
+                          course.getMeetingTime(), course.getCapacity());
     }
 }
@@ -0,0 +1,301 @@
+import java.time.Duration;
+
+/**
+ * Tuning options for a {@link CourseDatabase}. Use {@link #builder()} to override the defaults.
+ */
+public class CourseDatabaseConfig {
+    public static final CourseDatabaseConfig DEFAULT = builder().build();
+
+    private final int statementCacheSize;
+    private final int readPoolSize;
+    private final Duration acquireTimeout;
+    private final int fetchSize;
+    private final int studentCacheSize;
+    private final int courseCacheSize;
+    private final Duration entityCacheTtl;
+    private final SqliteProfile profile;
+    private final CourseDatabaseMetrics metrics;
+    private final Duration slowQueryThreshold;
+    private final boolean changeFeed;
+    private final boolean readOnly;
+    private final boolean enrollmentSummary;
+
+    private CourseDatabaseConfig(Builder builder) {
+        this.statementCacheSize = builder.statementCacheSize;
+        this.readPoolSize = builder.readPoolSize;
+        this.acquireTimeout = builder.acquireTimeout;
+        this.fetchSize = builder.fetchSize;
+        this.studentCacheSize = builder.studentCacheSize;
+        this.courseCacheSize = builder.courseCacheSize;
+        this.entityCacheTtl = builder.entityCacheTtl;
+        this.profile = builder.profile;
+        this.metrics = builder.metrics;
+        this.slowQueryThreshold = builder.slowQueryThreshold;
+        this.changeFeed = builder.changeFeed;
+        this.readOnly = builder.readOnly;
+        this.enrollmentSummary = builder.enrollmentSummary;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the maximum number of compiled statements kept per connection
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * @return the number of read-only connections to open alongside the writer, 0 if reads share the writer
+     */
+    public int getReadPoolSize() {
+        return readPoolSize;
+    }
+
+    public boolean isPooled() {
+        return readPoolSize > 0;
+    }
+
+    /**
+     * @return how long a read waits for a free pooled connection before failing
+     */
+    public Duration getAcquireTimeout() {
+        return acquireTimeout;
+    }
+
+    /**
+     * @return the number of rows streaming queries ask the driver to fetch at a time
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * @return the maximum number of students kept by the getStudent read-through cache, 0 if disabled
+     */
+    public int getStudentCacheSize() {
+        return studentCacheSize;
+    }
+
+    /**
+     * @return the maximum number of courses kept by the getCourse read-through cache, 0 if disabled
+     */
+    public int getCourseCacheSize() {
+        return courseCacheSize;
+    }
+
+    /**
+     * @return how long cached students and courses may be served, {@link Duration#ZERO} for no expiry
+     */
+    public Duration getEntityCacheTtl() {
+        return entityCacheTtl;
+    }
+
+    /**
+     * @return the PRAGMA profile applied on connect
+     */
+    public SqliteProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return the sink for per-operation measurements, or null if instrumentation is disabled
+     */
+    public CourseDatabaseMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return operations at least this slow are reported as slow queries, {@link Duration#ZERO} to disable
+     */
+    public Duration getSlowQueryThreshold() {
+        return slowQueryThreshold;
+    }
+
+    /**
+     * @return whether createTablesIfNeeded installs the triggers that record changes in the ChangeLog table
+     */
+    public boolean isChangeFeed() {
+        return changeFeed;
+    }
+
+    /**
+     * @return whether the database is opened read-only, e.g. over a snapshot
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * @return whether enrollment counts are kept in the EnrollmentSummary table instead of counted on demand
+     */
+    public boolean isEnrollmentSummary() {
+        return enrollmentSummary;
+    }
+
+    public static class Builder {
+        private int statementCacheSize = 32;
+        private int readPoolSize = 0;
+        private Duration acquireTimeout = Duration.ofSeconds(5);
+        private int fetchSize = 500;
+        private int studentCacheSize = 0;
+        private int courseCacheSize = 0;
+        private Duration entityCacheTtl = Duration.ZERO;
+        private SqliteProfile profile = SqliteProfile.DEFAULT;
+        private CourseDatabaseMetrics metrics = null;
+        private Duration slowQueryThreshold = Duration.ZERO;
+        private boolean changeFeed = false;
+        private boolean readOnly = false;
+        private boolean enrollmentSummary = false;
+
+        private Builder() {
+        }
+
+        /**
+         * @return a new builder with the same settings, so this one isn't changed by further calls
+         */
+        public Builder copy() {
+            Builder copy = new Builder();
+            copy.statementCacheSize = statementCacheSize;
+            copy.readPoolSize = readPoolSize;
+            copy.acquireTimeout = acquireTimeout;
+            copy.fetchSize = fetchSize;
+            copy.studentCacheSize = studentCacheSize;
+            copy.courseCacheSize = courseCacheSize;
+            copy.entityCacheTtl = entityCacheTtl;
+            copy.profile = profile;
+            copy.metrics = metrics;
+            copy.slowQueryThreshold = slowQueryThreshold;
+            copy.changeFeed = changeFeed;
+            copy.readOnly = readOnly;
+            copy.enrollmentSummary = enrollmentSummary;
+            return copy;
+        }
+
+        public Builder statementCacheSize(int statementCacheSize) {
+            this.statementCacheSize = statementCacheSize;
+            return this;
+        }
+
+        /**
+         * Enables pooled mode - one writer connection plus readPoolSize read-only connections with the
+         * database in WAL journal mode. Requires a database file (not ":memory:").
+         */
+        public Builder readPoolSize(int readPoolSize) {
+            this.readPoolSize = readPoolSize;
+            return this;
+        }
+
+        public Builder acquireTimeout(Duration acquireTimeout) {
+            this.acquireTimeout = acquireTimeout;
+            return this;
+        }
+
+        public Builder fetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+            return this;
+        }
+
+        public Builder studentCacheSize(int studentCacheSize) {
+            this.studentCacheSize = studentCacheSize;
+            return this;
+        }
+
+        public Builder courseCacheSize(int courseCacheSize) {
+            this.courseCacheSize = courseCacheSize;
+            return this;
+        }
+
+        public Builder entityCacheTtl(Duration entityCacheTtl) {
+            this.entityCacheTtl = entityCacheTtl;
+            return this;
+        }
+
+        public Builder profile(SqliteProfile profile) {
+            this.profile = profile;
+            return this;
+        }
+
+        /**
+         * @param profileName a profile name such as "durable", "bulk-load" or "read-mostly"
+         */
+        public Builder profile(String profileName) {
+            return profile(SqliteProfile.fromName(profileName));
+        }
+
+        /**
+         * Enables instrumentation - every public CourseDatabase operation is timed and reported to metrics
+         */
+        public Builder metrics(CourseDatabaseMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Reports operations taking at least slowQueryThreshold, with their SQL and parameters, to the
+         * metrics. Has no effect without {@link #metrics}.
+         */
+        public Builder slowQueryThreshold(Duration slowQueryThreshold) {
+            this.slowQueryThreshold = slowQueryThreshold;
+            return this;
+        }
+
+        /**
+         * Records every change to Students, Courses and Enrollments in a ChangeLog table, see
+         * {@link CourseDatabase#changesSince(long)}
+         */
+        public Builder changeFeed(boolean changeFeed) {
+            this.changeFeed = changeFeed;
+            return this;
+        }
+
+        /**
+         * Opens the database read-only - writes fail, and the profile's journal_mode is not applied. Can't be
+         * combined with pooled mode.
+         */
+        public Builder readOnly(boolean readOnly) {
+            this.readOnly = readOnly;
+            return this;
+        }
+
+        /**
+         * Keeps per-course enrollment counts up to date in an EnrollmentSummary table, so the enrollmentCounts
+         * queries read one row per course instead of counting every enrollment. Costs an extra row write per
+         * enrollment change.
+         */
+        public Builder enrollmentSummary(boolean enrollmentSummary) {
+            this.enrollmentSummary = enrollmentSummary;
+            return this;
+        }
+
+        public CourseDatabaseConfig build() {
+            if (statementCacheSize < 1) {
+                throw new IllegalArgumentException("Statement cache size must be at least 1");
+            }
+            if (readPoolSize < 0) {
+                throw new IllegalArgumentException("Read pool size must not be negative");
+            }
+            if (acquireTimeout.isNegative()) {
+                throw new IllegalArgumentException("Acquire timeout must not be negative");
+            }
+            if (fetchSize < 1) {
+                throw new IllegalArgumentException("Fetch size must be at least 1");
+            }
+            if (studentCacheSize < 0 || courseCacheSize < 0) {
+                throw new IllegalArgumentException("Entity cache sizes must not be negative");
+            }
+            if (entityCacheTtl.isNegative()) {
+                throw new IllegalArgumentException("Entity cache TTL must not be negative");
+            }
+            if (readOnly && readPoolSize > 0) {
+                throw new IllegalArgumentException("A read-only database can't use a read pool");
+            }
+            if (slowQueryThreshold.isNegative()) {
+                throw new IllegalArgumentException("Slow query threshold must not be negative");
+            }
+            return new CourseDatabaseConfig(this);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Receives a measurement for every public {@link CourseDatabase} operation. Set one with
+ * {@link CourseDatabaseConfig.Builder#metrics}; {@link InMemoryMetrics} is the built-in implementation.
+ *
+ * Implementations are called on the thread that ran the operation, possibly from several threads at once,
+ * so they must be thread-safe and should return quickly.
+ */
+public interface CourseDatabaseMetrics {
+    /**
+     * An operation that took at least the configured slow-query threshold
+     * @param operation the CourseDatabase method, e.g. "getStudent"
+     * @param sql the main statement the operation ran, or null if it doesn't map to one statement
+     * @param parameters the values bound to that statement (for bulk writes, the batch size)
+     * @param elapsed how long the operation took
+     */
+    record SlowQuery(String operation, String sql, List<Object> parameters, Duration elapsed) { }
+
+    /**
+     * @param operation the CourseDatabase method, e.g. "getStudent"
+     * @param elapsedNanos how long the operation took, including failures
+     * @param rows rows returned by a read, or -1 for operations that don't return rows
+     * @param failed whether the operation threw
+     */
+    void recordOperation(String operation, long elapsedNanos, long rows, boolean failed);
+
+    void recordSlowQuery(SlowQuery slowQuery);
+}
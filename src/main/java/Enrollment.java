@@ -0,0 +1,8 @@
+/**
+ * A single row of the Enrollments table - a student (by ID) enrolled in a course (by CRN)
+ */
+public record Enrollment(int studentId, int crn) {
+    public static Enrollment of(Student student, Course course) {
+        return new Enrollment(student.getId(), course.getCrn());
+    }
+}
@@ -0,0 +1,162 @@
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit for enrollments. Callers submit enrollments from any thread and get a future back; a
+ * background committer collects whatever arrives within the commit window (or up to maxBatchSize
+ * enrollments), writes it as one transaction and completes every future once the commit has returned.
+ *
+ * One commit - and so one fsync - covers the whole group. Rows rejected by a constraint (duplicates,
+ * unknown students or courses) fail only their own future. Any other failure rolls the group back and
+ * fails all of it; the committer keeps running for later groups.
+ *
+ * The committer owns the database's writer connection while it is open.
+ */
+public class EnrollmentCommitter implements AutoCloseable {
+    private record Pending(Enrollment enrollment, CompletableFuture<Void> future) { }
+
+    private final CourseDatabase courseDatabase;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<Pending> queue;
+    private final Thread committer;
+
+    private volatile boolean closed;
+    private volatile long commits;
+    private volatile long committedEnrollments;
+
+    /**
+     * @param courseDatabase a connected database
+     * @param window how long to keep collecting after the first enrollment of a group arrives
+     * @param maxBatchSize the most enrollments committed together
+     * @param maxPending the most enrollments waiting for a commit before submit starts rejecting
+     */
+    public EnrollmentCommitter(CourseDatabase courseDatabase, Duration window, int maxBatchSize, int maxPending) {
+        if (maxBatchSize < 1 || maxPending < 1) {
+            throw new IllegalArgumentException("Batch size and pending limit must be at least 1");
+        }
+        this.courseDatabase = courseDatabase;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        queue = new ArrayBlockingQueue<>(maxPending);
+        committer = new Thread(this::run, "enrollment-committer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    public CompletableFuture<Void> addEnrollment(Student student, Course course) {
+        return addEnrollment(Enrollment.of(student, course));
+    }
+
+    /**
+     * @return a future completed once the enrollment is committed, or failed with the exception that
+     * rejected it; fails with RejectedExecutionException when too many enrollments are already waiting
+     */
+    public CompletableFuture<Void> addEnrollment(Enrollment enrollment) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Committer is closed"));
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!queue.offer(new Pending(enrollment, future))) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Too many pending enrollments"));
+        }
+        return future;
+    }
+
+    private void run() {
+        List<Pending> group = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (group.size() < maxBatchSize) {
+                    Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+            } catch (InterruptedException e) {
+                // close() interrupts only to cut the window short - commit what we have
+            }
+            if (!group.isEmpty()) {
+                commitGroup(group);
+                group.clear();
+            }
+        }
+    }
+
+    private void commitGroup(List<Pending> group) {
+        List<Enrollment> enrollments = new ArrayList<>(group.size());
+        for (Pending pending : group) {
+            enrollments.add(pending.enrollment());
+        }
+        try {
+            BatchResult<Enrollment> result = courseDatabase.addEnrollments(enrollments, maxBatchSize);
+            courseDatabase.commit();
+            commits++;
+            committedEnrollments += result.getSucceeded();
+            for (BatchResult.Conflict<Enrollment> conflict : result.getConflicts()) {
+                group.get(conflict.index()).future().completeExceptionally(conflict.cause());
+            }
+            for (Pending pending : group) {
+                // already-failed futures ignore this
+                pending.future().complete(null);
+            }
+        } catch (SQLException | RuntimeException e) {
+            // e.g. IllegalStateException once the database is disconnected - fail the group, not the committer
+            try {
+                courseDatabase.rollback();
+            } catch (SQLException | RuntimeException rollbackFailure) {
+                e.addSuppressed(rollbackFailure);
+            }
+            for (Pending pending : group) {
+                pending.future().completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of group commits so far
+     */
+    public long getCommits() {
+        return commits;
+    }
+
+    /**
+     * @return the number of enrollments written by those commits
+     */
+    public long getCommittedEnrollments() {
+        return committedEnrollments;
+    }
+
+    /**
+     * Stops accepting enrollments, commits the ones already submitted and stops the committer thread
+     */
+    @Override
+    public void close() {
+        closed = true;
+        committer.interrupt();
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // anything that raced past the closed check after the committer exited
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future().completeExceptionally(new RejectedExecutionException("Committer is closed"));
+        }
+    }
+}
@@ -0,0 +1,443 @@
+import java.util.Arrays;
+
+/**
+ * In-memory index of enrollments in both directions - the CRNs each student is enrolled in and the
+ * students enrolled in each CRN - stored as primitive int arrays in CSR form (sorted keys, offsets into one
+ * values array), with no boxed integers.
+ *
+ * Reads go through an immutable {@link Snapshot} and never block. Changes are staged by the owning
+ * {@link CourseDatabase} and published at commit as a small sorted overlay on top of the CSR arrays, which
+ * is folded back into new arrays once it grows past a fraction of the index.
+ */
+public class EnrollmentIndex {
+    private static final int[] NO_IDS = new int[0];
+    private static final long[] NO_PAIRS = new long[0];
+    private static final int MIN_OVERLAY_BEFORE_COMPACTION = 1024;
+
+    /**
+     * An immutable view of every committed enrollment at one point in time. Methods returning arrays
+     * return fresh, sorted copies.
+     */
+    public static final class Snapshot {
+        private final Adjacency byStudent;
+        private final Adjacency byCourse;
+        // overlay, sorted pairs - (studentId, crn) and (crn, studentId)
+        private final long[] addedByStudent;
+        private final long[] addedByCourse;
+        private final long[] removedByStudent;
+        private final long[] removedByCourse;
+
+        private Snapshot(Adjacency byStudent, Adjacency byCourse, long[] addedByStudent, long[] addedByCourse,
+                         long[] removedByStudent, long[] removedByCourse) {
+            this.byStudent = byStudent;
+            this.byCourse = byCourse;
+            this.addedByStudent = addedByStudent;
+            this.addedByCourse = addedByCourse;
+            this.removedByStudent = removedByStudent;
+            this.removedByCourse = removedByCourse;
+        }
+
+        /**
+         * @return the CRNs the student is enrolled in, ascending
+         */
+        public int[] crnsOf(int studentId) {
+            return lookup(byStudent, addedByStudent, removedByStudent, studentId);
+        }
+
+        /**
+         * @return the IDs of the students enrolled in the course, ascending
+         */
+        public int[] studentsOf(int crn) {
+            return lookup(byCourse, addedByCourse, removedByCourse, crn);
+        }
+
+        public boolean isEnrolled(int studentId, int crn) {
+            long pair = pair(studentId, crn);
+            if (Arrays.binarySearch(addedByStudent, pair) >= 0) {
+                return true;
+            }
+            return byStudent.contains(studentId, crn) && Arrays.binarySearch(removedByStudent, pair) < 0;
+        }
+
+        public int courseCount(int studentId) {
+            return count(byStudent, addedByStudent, removedByStudent, studentId);
+        }
+
+        public int enrollmentCount(int crn) {
+            return count(byCourse, addedByCourse, removedByCourse, crn);
+        }
+
+        /**
+         * @return the total number of enrollments
+         */
+        public int size() {
+            return byStudent.values.length + addedByStudent.length - removedByStudent.length;
+        }
+
+        private int overlaySize() {
+            return addedByStudent.length + removedByStudent.length;
+        }
+
+        private static int[] lookup(Adjacency base, long[] added, long[] removed, int key) {
+            int[] baseValues = base.get(key);
+            int addedFrom = lowerBound(added, pair(key, Integer.MIN_VALUE));
+            int addedTo = lowerBound(added, pair(key + 1L, Integer.MIN_VALUE));
+            if (addedFrom == addedTo && removed.length == 0) {
+                return baseValues;
+            }
+            // merge the base values that weren't removed with the added ones - both are sorted
+            int[] merged = new int[baseValues.length + addedTo - addedFrom];
+            int size = 0;
+            int next = addedFrom;
+            for (int value : baseValues) {
+                while (next < addedTo && low(added[next]) < value) {
+                    merged[size++] = low(added[next++]);
+                }
+                if (Arrays.binarySearch(removed, pair(key, value)) < 0) {
+                    merged[size++] = value;
+                }
+            }
+            while (next < addedTo) {
+                merged[size++] = low(added[next++]);
+            }
+            return size == merged.length ? merged : Arrays.copyOf(merged, size);
+        }
+
+        private static int count(Adjacency base, long[] added, long[] removed, int key) {
+            int addedCount = lowerBound(added, pair(key + 1L, Integer.MIN_VALUE))
+                             - lowerBound(added, pair(key, Integer.MIN_VALUE));
+            int removedCount = lowerBound(removed, pair(key + 1L, Integer.MIN_VALUE))
+                               - lowerBound(removed, pair(key, Integer.MIN_VALUE));
+            return base.count(key) + addedCount - removedCount;
+        }
+
+        /**
+         * @return every enrollment as sorted (studentId, crn) pairs
+         */
+        private long[] pairsByStudent() {
+            long[] pairs = new long[size()];
+            int size = 0;
+            int next = 0;
+            for (int i = 0; i < byStudent.keys.length; i++) {
+                int studentId = byStudent.keys[i];
+                for (int j = byStudent.offsets[i]; j < byStudent.offsets[i + 1]; j++) {
+                    long pair = pair(studentId, byStudent.values[j]);
+                    while (next < addedByStudent.length && addedByStudent[next] < pair) {
+                        pairs[size++] = addedByStudent[next++];
+                    }
+                    if (Arrays.binarySearch(removedByStudent, pair) < 0) {
+                        pairs[size++] = pair;
+                    }
+                }
+            }
+            while (next < addedByStudent.length) {
+                pairs[size++] = addedByStudent[next++];
+            }
+            return pairs;
+        }
+    }
+
+    /**
+     * CSR adjacency - the values of keys[i] are values[offsets[i]] up to values[offsets[i + 1]], ascending
+     */
+    private static final class Adjacency {
+        private static final Adjacency EMPTY = new Adjacency(NO_IDS, new int[] {0}, NO_IDS);
+
+        private final int[] keys;
+        private final int[] offsets;
+        private final int[] values;
+
+        private Adjacency(int[] keys, int[] offsets, int[] values) {
+            this.keys = keys;
+            this.offsets = offsets;
+            this.values = values;
+        }
+
+        /**
+         * @param pairs sorted (key, value) pairs without duplicates
+         */
+        static Adjacency fromSortedPairs(long[] pairs) {
+            int keyCount = 0;
+            for (int i = 0; i < pairs.length; i++) {
+                if (i == 0 || high(pairs[i]) != high(pairs[i - 1])) {
+                    keyCount++;
+                }
+            }
+            int[] keys = new int[keyCount];
+            int[] offsets = new int[keyCount + 1];
+            int[] values = new int[pairs.length];
+            int key = -1;
+            for (int i = 0; i < pairs.length; i++) {
+                if (i == 0 || high(pairs[i]) != high(pairs[i - 1])) {
+                    key++;
+                    keys[key] = high(pairs[i]);
+                    offsets[key] = i;
+                }
+                values[i] = low(pairs[i]);
+            }
+            offsets[keyCount] = pairs.length;
+            return new Adjacency(keys, offsets, values);
+        }
+
+        int[] get(int key) {
+            int i = Arrays.binarySearch(keys, key);
+            return i < 0 ? NO_IDS : Arrays.copyOfRange(values, offsets[i], offsets[i + 1]);
+        }
+
+        int count(int key) {
+            int i = Arrays.binarySearch(keys, key);
+            return i < 0 ? 0 : offsets[i + 1] - offsets[i];
+        }
+
+        boolean contains(int key, int value) {
+            int i = Arrays.binarySearch(keys, key);
+            return i >= 0 && Arrays.binarySearch(values, offsets[i], offsets[i + 1], value) >= 0;
+        }
+    }
+
+    private volatile Snapshot snapshot;
+    // changes made in the open transaction, published by commit - (studentId, crn) pairs
+    private long[] stagedPairs = new long[16];
+    private boolean[] stagedAdds = new boolean[16];
+    private int stagedCount;
+    // the open transaction emptied the index before making the staged changes
+    private boolean stagedClear;
+
+    private EnrollmentIndex(Snapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    static EnrollmentIndex empty() {
+        return new EnrollmentIndex(build(NO_PAIRS));
+    }
+
+    /**
+     * Growable buffer of (studentId, crn) pairs for loading the index
+     */
+    static final class PairBuffer {
+        private long[] pairs = new long[1024];
+        private int size;
+
+        void add(int studentId, int crn) {
+            if (size == pairs.length) {
+                pairs = Arrays.copyOf(pairs, size * 2);
+            }
+            pairs[size++] = pair(studentId, crn);
+        }
+    }
+
+    /**
+     * Replaces the whole index with the buffered enrollments and drops staged changes
+     */
+    synchronized void reset(PairBuffer enrollments) {
+        long[] pairs = Arrays.copyOf(enrollments.pairs, enrollments.size);
+        Arrays.sort(pairs);
+        stagedCount = 0;
+        stagedClear = false;
+        snapshot = build(pairs);
+    }
+
+    private static Snapshot build(long[] pairsByStudent) {
+        long[] pairsByCourse = swapAll(pairsByStudent);
+        return new Snapshot(Adjacency.fromSortedPairs(pairsByStudent), Adjacency.fromSortedPairs(pairsByCourse),
+                            NO_PAIRS, NO_PAIRS, NO_PAIRS, NO_PAIRS);
+    }
+
+    /**
+     * @return the committed enrollments as of now - later commits don't affect it
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    public int[] crnsOf(int studentId) {
+        return snapshot.crnsOf(studentId);
+    }
+
+    public int[] studentsOf(int crn) {
+        return snapshot.studentsOf(crn);
+    }
+
+    public boolean isEnrolled(int studentId, int crn) {
+        return snapshot.isEnrolled(studentId, crn);
+    }
+
+    /**
+     * The student's CRNs as the writer sees them - the snapshot plus the changes staged in the open
+     * transaction
+     */
+    synchronized int[] pendingCrnsOf(int studentId) {
+        int[] crns = stagedClear ? NO_IDS : snapshot.crnsOf(studentId);
+        int size = crns.length;
+        for (int i = 0; i < stagedCount; i++) {
+            if (high(stagedPairs[i]) != studentId) {
+                continue;
+            }
+            int crn = low(stagedPairs[i]);
+            int at = Arrays.binarySearch(crns, 0, size, crn);
+            if (stagedAdds[i] && at < 0) {
+                at = -at - 1;
+                if (size == crns.length) {
+                    crns = Arrays.copyOf(crns, size * 2 + 1);
+                }
+                System.arraycopy(crns, at, crns, at + 1, size - at);
+                crns[at] = crn;
+                size++;
+            } else if (!stagedAdds[i] && at >= 0) {
+                System.arraycopy(crns, at + 1, crns, at, size - at - 1);
+                size--;
+            }
+        }
+        return size == crns.length ? crns : Arrays.copyOf(crns, size);
+    }
+
+    synchronized void stageAdd(int studentId, int crn) {
+        stage(pair(studentId, crn), true);
+    }
+
+    synchronized void stageRemove(int studentId, int crn) {
+        stage(pair(studentId, crn), false);
+    }
+
+    private void stage(long pair, boolean add) {
+        if (stagedCount == stagedPairs.length) {
+            stagedPairs = Arrays.copyOf(stagedPairs, stagedCount * 2);
+            stagedAdds = Arrays.copyOf(stagedAdds, stagedCount * 2);
+        }
+        stagedPairs[stagedCount] = pair;
+        stagedAdds[stagedCount] = add;
+        stagedCount++;
+    }
+
+    /**
+     * Publishes the staged changes as a new snapshot
+     */
+    synchronized void commit() {
+        if (stagedCount == 0 && !stagedClear) {
+            return;
+        }
+        Snapshot current = stagedClear ? build(NO_PAIRS) : snapshot;
+        stagedClear = false;
+        LongSet added = new LongSet(current.addedByStudent);
+        LongSet removed = new LongSet(current.removedByStudent);
+        for (int i = 0; i < stagedCount; i++) {
+            long pair = stagedPairs[i];
+            boolean inBase = current.byStudent.contains(high(pair), low(pair));
+            if (stagedAdds[i]) {
+                removed.remove(pair);
+                if (!inBase) {
+                    added.add(pair);
+                }
+            } else {
+                added.remove(pair);
+                if (inBase) {
+                    removed.add(pair);
+                }
+            }
+        }
+        stagedCount = 0;
+
+        long[] addedByStudent = added.toSortedArray();
+        long[] removedByStudent = removed.toSortedArray();
+        Snapshot next = new Snapshot(current.byStudent, current.byCourse, addedByStudent, swapAll(addedByStudent),
+                                     removedByStudent, swapAll(removedByStudent));
+        if (next.overlaySize() > Math.max(MIN_OVERLAY_BEFORE_COMPACTION, current.byStudent.values.length / 8)) {
+            next = build(next.pairsByStudent());
+        }
+        snapshot = next;
+    }
+
+    /**
+     * Drops the staged changes
+     */
+    synchronized void rollback() {
+        stagedCount = 0;
+        stagedClear = false;
+    }
+
+    /**
+     * Stages removing every enrollment, e.g. for clearTables - like other staged changes, it's published by
+     * commit and dropped by rollback
+     */
+    synchronized void stageClear() {
+        stagedCount = 0;
+        stagedClear = true;
+    }
+
+    /**
+     * Packs two ints into a long that sorts by high, then low. The low sign bit is flipped so that the
+     * unsigned low half orders like a signed int.
+     */
+    private static long pair(long high, int low) {
+        return (high << 32) | ((low ^ Integer.MIN_VALUE) & 0xffffffffL);
+    }
+
+    private static int high(long pair) {
+        return (int) (pair >> 32);
+    }
+
+    private static int low(long pair) {
+        return (int) pair ^ Integer.MIN_VALUE;
+    }
+
+    private static long[] swapAll(long[] pairs) {
+        long[] swapped = new long[pairs.length];
+        for (int i = 0; i < pairs.length; i++) {
+            swapped[i] = pair(low(pairs[i]), high(pairs[i]));
+        }
+        Arrays.sort(swapped);
+        return swapped;
+    }
+
+    private static int lowerBound(long[] sorted, long value) {
+        int i = Arrays.binarySearch(sorted, value);
+        if (i < 0) {
+            return -i - 1;
+        }
+        // binarySearch finds some match - back up to the first
+        while (i > 0 && sorted[i - 1] == value) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Set of longs kept as a sorted array, for merging staged changes into the overlay
+     */
+    private static final class LongSet {
+        private long[] sorted;
+        private int size;
+
+        LongSet(long[] initial) {
+            sorted = Arrays.copyOf(initial, Math.max(16, initial.length * 2));
+            size = initial.length;
+        }
+
+        void add(long value) {
+            int i = Arrays.binarySearch(sorted, 0, size, value);
+            if (i >= 0) {
+                return;
+            }
+            int insertAt = -i - 1;
+            if (size == sorted.length) {
+                sorted = Arrays.copyOf(sorted, size * 2);
+            }
+            System.arraycopy(sorted, insertAt, sorted, insertAt + 1, size - insertAt);
+            sorted[insertAt] = value;
+            size++;
+        }
+
+        void remove(long value) {
+            int i = Arrays.binarySearch(sorted, 0, size, value);
+            if (i < 0) {
+                return;
+            }
+            System.arraycopy(sorted, i + 1, sorted, i, size - i - 1);
+            size--;
+        }
+
+        long[] toSortedArray() {
+            return Arrays.copyOf(sorted, size);
+        }
+    }
+}
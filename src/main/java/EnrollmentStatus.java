@@ -0,0 +1,9 @@
+/**
+ * Outcome of {@link CourseDatabase#enrollOrWaitlist(Student, Course)}
+ */
+public enum EnrollmentStatus {
+    /** the student took a seat in the course */
+    ENROLLED,
+    /** the course was full, so the student was added to the end of its waitlist */
+    WAITLISTED
+}
@@ -0,0 +1,129 @@
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Size-bounded LRU cache of entities with optional time-to-live. Entities are copied on the way in and on
+ * the way out, so callers never share a mutable instance with the cache.
+ * @param <K> the entity key
+ * @param <V> the entity type
+ */
+public class EntityCache<K, V> {
+    /**
+     * Point-in-time cache statistics
+     */
+    public record Stats(long hits, long misses, long evictions, long expirations, int size) {
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+
+    private record Entry<V>(V value, long loadedAtNanos) { }
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final UnaryOperator<V> copier;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    // keys written in the open transaction - invalidated again at commit, once the new values are visible
+    private final Set<K> uncommittedKeys = new HashSet<>();
+    private long epoch;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    /**
+     * @param maxSize the maximum number of cached entities
+     * @param ttl how long an entity may be served from the cache, or {@link Duration#ZERO} for no expiry
+     * @param copier makes an independent copy of an entity
+     */
+    public EntityCache(int maxSize, Duration ttl, UnaryOperator<V> copier) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.copier = copier;
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @return a copy of the cached entity, or null on a miss
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && ttlNanos > 0 && System.nanoTime() - entry.loadedAtNanos() > ttlNanos) {
+            entries.remove(key);
+            expirations++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return copier.apply(entry.value());
+    }
+
+    /**
+     * The current invalidation epoch - pass it to {@link #putIfUnchanged} so that a value loaded before an
+     * invalidation is never cached after it
+     */
+    public synchronized long epoch() {
+        return epoch;
+    }
+
+    /**
+     * Caches a copy of the value unless anything was invalidated since the epoch was read
+     */
+    public synchronized void putIfUnchanged(K key, V value, long loadedEpoch) {
+        if (loadedEpoch != epoch) {
+            return;
+        }
+        entries.put(key, new Entry<>(copier.apply(value), System.nanoTime()));
+        if (entries.size() > maxSize) {
+            Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drops a key written in the open transaction
+     */
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+        uncommittedKeys.add(key);
+        epoch++;
+    }
+
+    /**
+     * Drops keys written in the transaction that was just committed, in case a reader cached the old value
+     * before the commit made the new one visible
+     */
+    public synchronized void commit() {
+        if (uncommittedKeys.isEmpty()) {
+            return;
+        }
+        entries.keySet().removeAll(uncommittedKeys);
+        uncommittedKeys.clear();
+        epoch++;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        uncommittedKeys.clear();
+        epoch++;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, expirations, entries.size());
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Built-in {@link CourseDatabaseMetrics} - per-operation counters and latency histograms kept in memory,
+ * plus the most recent slow queries
+ */
+public class InMemoryMetrics implements CourseDatabaseMetrics {
+    /**
+     * Point-in-time statistics of one operation. Percentiles are accurate to within about 12%.
+     */
+    public record OperationStats(long count, long failures, long rows, long totalNanos,
+                                 long p50Nanos, long p99Nanos, long maxNanos) {
+        public double meanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+    }
+
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private final int slowQueryCapacity;
+    private final ArrayDeque<SlowQuery> slowQueries;
+
+    public InMemoryMetrics() {
+        this(100);
+    }
+
+    /**
+     * @param slowQueryCapacity how many of the most recent slow queries to keep
+     */
+    public InMemoryMetrics(int slowQueryCapacity) {
+        if (slowQueryCapacity < 1) {
+            throw new IllegalArgumentException("Slow query capacity must be at least 1");
+        }
+        this.slowQueryCapacity = slowQueryCapacity;
+        slowQueries = new ArrayDeque<>(slowQueryCapacity);
+    }
+
+    @Override
+    public void recordOperation(String operation, long elapsedNanos, long rows, boolean failed) {
+        operations.computeIfAbsent(operation, name -> new Operation()).record(elapsedNanos, rows, failed);
+    }
+
+    @Override
+    public void recordSlowQuery(SlowQuery slowQuery) {
+        synchronized (slowQueries) {
+            if (slowQueries.size() == slowQueryCapacity) {
+                slowQueries.removeFirst();
+            }
+            slowQueries.addLast(slowQuery);
+        }
+    }
+
+    /**
+     * @return statistics of every operation recorded so far, sorted by operation name
+     */
+    public Map<String, OperationStats> getOperationStats() {
+        Map<String, OperationStats> stats = new TreeMap<>();
+        operations.forEach((name, operation) -> stats.put(name, operation.snapshot()));
+        return Collections.unmodifiableMap(stats);
+    }
+
+    public OperationStats getOperationStats(String operation) {
+        Operation recorded = operations.get(operation);
+        return recorded == null ? new OperationStats(0, 0, 0, 0, 0, 0, 0) : recorded.snapshot();
+    }
+
+    /**
+     * @return the most recent slow queries, oldest first
+     */
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return List.copyOf(slowQueries);
+        }
+    }
+
+    public void reset() {
+        operations.clear();
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    private static class Operation {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        void record(long elapsedNanos, long rowCount, boolean failed) {
+            count.increment();
+            if (failed) {
+                failures.increment();
+            }
+            if (rowCount > 0) {
+                rows.add(rowCount);
+            }
+            totalNanos.add(elapsedNanos);
+            maxNanos.accumulate(elapsedNanos);
+            histogram.record(elapsedNanos);
+        }
+
+        OperationStats snapshot() {
+            return new OperationStats(count.sum(), failures.sum(), rows.sum(), totalNanos.sum(),
+                                      histogram.percentile(0.50), histogram.percentile(0.99), maxNanos.get());
+        }
+    }
+
+    /**
+     * Log-linear histogram - each power of two is split into 8 buckets, so a bucket's lower bound is within
+     * 12.5% of every value in it. Lock-free, fixed size.
+     */
+    static class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(bucketIndex(Long.MAX_VALUE) + 1);
+
+        void record(long value) {
+            buckets.incrementAndGet(bucketIndex(Math.max(0, value)));
+        }
+
+        static int bucketIndex(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        static long bucketLowerBound(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long subBucket = index % SUB_BUCKETS;
+            return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        }
+
+        long percentile(double fraction) {
+            long[] counts = new long[buckets.length()];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return bucketLowerBound(i);
+                }
+            }
+            return bucketLowerBound(counts.length - 1);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+import java.util.Arrays;
+
+/**
+ * Immutable map from int keys (e.g. CRNs) to int counts, held as two sorted parallel arrays - no boxing, and
+ * {@link #get(int)} is a binary search. Keys that aren't present count as 0.
+ */
+public final class IntCountMap {
+    public static final IntCountMap EMPTY = new IntCountMap(new int[0], new int[0]);
+
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(int key, int count);
+    }
+
+    private final int[] keys;
+    private final int[] counts;
+
+    private IntCountMap(int[] keys, int[] counts) {
+        this.keys = keys;
+        this.counts = counts;
+    }
+
+    /**
+     * @return the count for the key, or 0 if it isn't in the map
+     */
+    public int get(int key) {
+        int index = Arrays.binarySearch(keys, key);
+        return index < 0 ? 0 : counts[index];
+    }
+
+    public boolean containsKey(int key) {
+        return Arrays.binarySearch(keys, key) >= 0;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * @param index from 0 to size() - 1, in ascending key order
+     */
+    public int keyAt(int index) {
+        return keys[index];
+    }
+
+    public int countAt(int index) {
+        return counts[index];
+    }
+
+    /**
+     * @return the sum of every count
+     */
+    public long total() {
+        long total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Visits every entry in ascending key order
+     */
+    public void forEach(EntryVisitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            visitor.visit(keys[i], counts[i]);
+        }
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Collects entries that arrive in strictly ascending key order, e.g. from an ORDER BY query
+     */
+    static class Builder {
+        private int[] keys = new int[16];
+        private int[] counts = new int[16];
+        private int size;
+
+        Builder add(int key, int count) {
+            if (size > 0 && key <= keys[size - 1]) {
+                throw new IllegalArgumentException("Keys must be added in ascending order, got " + key
+                                                   + " after " + keys[size - 1]);
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            keys[size] = key;
+            counts[size] = count;
+            size++;
+            return this;
+        }
+
+        IntCountMap build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            return new IntCountMap(Arrays.copyOf(keys, size), Arrays.copyOf(counts, size));
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IntCountMap other)) {
+            return false;
+        }
+        return Arrays.equals(keys, other.keys) && Arrays.equals(counts, other.counts);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(keys) + Arrays.hashCode(counts);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(keys[i]).append('=').append(counts[i]);
+        }
+        return builder.append('}').toString();
+    }
+}
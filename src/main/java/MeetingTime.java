@@ -0,0 +1,86 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A parsed {@link Course} meeting time such as "TR 14:00 - 15:15" - one or more slots, each a set of days
+ * (as a bitmask) with a start and end minute of the day
+ * @param slots the weekly slots, empty if the course has no scheduled meetings (e.g. "TBA")
+ */
+public record MeetingTime(List<Slot> slots) {
+    public static final MeetingTime NONE = new MeetingTime(List.of());
+
+    private static final String DAY_LETTERS = "MTWRFSU";
+    private static final Pattern SLOT = Pattern.compile(
+            "\\s*([MTWRFSU]+)\\s+(\\d{1,2}):(\\d{2})\\s*-\\s*(\\d{1,2}):(\\d{2})\\s*", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * @param days bitmask of meeting days, bit 0 is Monday through bit 6 for Sunday
+     * @param startMinute minutes after midnight the meeting starts
+     * @param endMinute minutes after midnight the meeting ends - a meeting ending when another starts
+     *                  doesn't overlap it
+     */
+    public record Slot(int days, int startMinute, int endMinute) {
+        public boolean overlaps(Slot other) {
+            return (days & other.days) != 0 && startMinute < other.endMinute && other.startMinute < endMinute;
+        }
+    }
+
+    public MeetingTime {
+        slots = List.copyOf(slots);
+    }
+
+    /**
+     * Parses meeting times like "TR 14:00-15:15", "MWF 10:00 - 10:50" or "MW 9:00-9:50; F 13:00-14:50".
+     * Days are M, T, W, R (Thursday), F, S and U (Sunday), times are 24-hour.
+     * @param meetingTime the text, where null, blank or "TBA" mean no scheduled meetings
+     * @throws IllegalArgumentException if the text isn't a meeting time
+     */
+    public static MeetingTime parse(String meetingTime) {
+        if (meetingTime == null || meetingTime.isBlank() || meetingTime.strip().equalsIgnoreCase("TBA")) {
+            return NONE;
+        }
+        List<Slot> slots = new ArrayList<>();
+        for (String slot : meetingTime.split("[;,]")) {
+            Matcher matcher = SLOT.matcher(slot);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Not a meeting time: \"" + meetingTime + "\"");
+            }
+            int days = 0;
+            for (char day : matcher.group(1).toUpperCase().toCharArray()) {
+                days |= 1 << DAY_LETTERS.indexOf(day);
+            }
+            int start = minuteOfDay(matcher.group(2), matcher.group(3), meetingTime);
+            int end = minuteOfDay(matcher.group(4), matcher.group(5), meetingTime);
+            if (end <= start) {
+                throw new IllegalArgumentException("Meeting ends before it starts: \"" + meetingTime + "\"");
+            }
+            slots.add(new Slot(days, start, end));
+        }
+        return new MeetingTime(slots);
+    }
+
+    private static int minuteOfDay(String hours, String minutes, String meetingTime) {
+        int hour = Integer.parseInt(hours);
+        int minute = Integer.parseInt(minutes);
+        if (hour > 23 || minute > 59) {
+            throw new IllegalArgumentException("Not a time of day in \"" + meetingTime + "\"");
+        }
+        return hour * 60 + minute;
+    }
+
+    /**
+     * @return true if any slot of this meeting time overlaps any slot of the other
+     */
+    public boolean overlaps(MeetingTime other) {
+        for (Slot slot : slots) {
+            for (Slot otherSlot : other.slots) {
+                if (slot.overlaps(otherSlot)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
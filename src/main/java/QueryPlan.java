@@ -0,0 +1,27 @@
+import java.util.List;
+
+/**
+ * The EXPLAIN QUERY PLAN output of one query issued by {@link CourseDatabase}
+ * @param name the operation issuing the query
+ * @param sql the query text
+ * @param steps the plan's detail lines, e.g. "SEARCH s USING INTEGER PRIMARY KEY (rowid=?)"
+ * @param fullScanExpected whether the operation reads a whole table by design, e.g. getStudents
+ */
+public record QueryPlan(String name, String sql, List<String> steps, boolean fullScanExpected) {
+    /**
+     * @return the steps that scan a whole table or index, ignoring scans of table-valued functions
+     * such as json_each
+     */
+    public List<String> fullScans() {
+        return steps.stream()
+                .filter(step -> step.startsWith("SCAN ") && !step.contains("VIRTUAL TABLE"))
+                .toList();
+    }
+
+    /**
+     * @return true if the query scans a whole table although its operation should be an indexed lookup
+     */
+    public boolean hasUnexpectedFullScan() {
+        return !fullScanExpected && !fullScans().isEmpty();
+    }
+}
@@ -0,0 +1,214 @@
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size pool of read-only SQLite connections, each with its own statement cache. Intended for a
+ * database in WAL journal mode, where readers don't block (and aren't blocked by) the single writer.
+ */
+public class ReadConnectionPool implements AutoCloseable {
+    /**
+     * Point-in-time pool utilization
+     * @param size the number of pooled connections
+     * @param inUse connections currently checked out
+     * @param peakInUse the most connections ever checked out at once
+     * @param acquisitions successful acquisitions
+     * @param timeouts acquisitions that gave up after the acquire timeout
+     * @param totalWaitNanos total time spent waiting for a connection across all acquisitions
+     */
+    public record Stats(int size, int inUse, int peakInUse, long acquisitions, long timeouts, long totalWaitNanos) {
+        public double utilization() {
+            return size == 0 ? 0 : (double) inUse / size;
+        }
+    }
+
+    /**
+     * One physical connection and its statement cache
+     */
+    private record Slot(Connection connection, StatementCache statements) { }
+
+    /**
+     * A connection checked out of the pool - closing it returns it to the pool. Each checkout gets its own
+     * handle, so closing it again (or using it after close) can't touch the next borrower's checkout.
+     */
+    public class PooledConnection implements AutoCloseable {
+        private final Slot slot;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private PooledConnection(Slot slot) {
+            this.slot = slot;
+        }
+
+        /**
+         * @throws SQLException if this checkout was already closed
+         */
+        public Connection connection() throws SQLException {
+            checkOpen();
+            return slot.connection();
+        }
+
+        /**
+         * @throws SQLException if this checkout was already closed
+         */
+        public StatementCache statements() throws SQLException {
+            checkOpen();
+            return slot.statements();
+        }
+
+        private void checkOpen() throws SQLException {
+            if (closed.get()) {
+                throw new SQLException("Pooled connection is already closed");
+            }
+        }
+
+        /**
+         * Returns the connection to the pool - later calls do nothing
+         */
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                release(slot);
+            }
+        }
+    }
+
+    private final List<Slot> connections;
+    private final BlockingQueue<Slot> idle;
+    private final long acquireTimeoutNanos;
+    private volatile boolean closed;
+
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger peakInUse = new AtomicInteger();
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+
+    private ReadConnectionPool(int size, Duration acquireTimeout) {
+        this.connections = new ArrayList<>(size);
+        this.idle = new ArrayBlockingQueue<>(size);
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+    }
+
+    /**
+     * Opens size read-only connections to the database
+     * @param url the JDBC url of the database
+     * @param size the number of connections
+     * @param statementCacheSize the statement cache capacity of each connection
+     * @param acquireTimeout how long {@link #acquire()} waits for a free connection
+     */
+    public static ReadConnectionPool open(String url, int size, int statementCacheSize,
+                                          Duration acquireTimeout) throws SQLException {
+        return open(url, size, statementCacheSize, acquireTimeout, Map.of());
+    }
+
+    /**
+     * Opens size read-only connections to the database, applying the given per-connection PRAGMAs to each
+     */
+    public static ReadConnectionPool open(String url, int size, int statementCacheSize, Duration acquireTimeout,
+                                          Map<String, String> pragmas) throws SQLException {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        ReadConnectionPool pool = new ReadConnectionPool(size, acquireTimeout);
+        try {
+            for (int i = 0; i < size; i++) {
+                Connection connection = DriverManager.getConnection(url, config.toProperties());
+                pool.connections.add(new Slot(connection, new StatementCache(connection, statementCacheSize)));
+                try (Statement statement = connection.createStatement()) {
+                    for (Map.Entry<String, String> pragma : pragmas.entrySet()) {
+                        statement.execute("PRAGMA " + pragma.getKey() + "=" + pragma.getValue());
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            pool.close();
+            throw e;
+        }
+        pool.idle.addAll(pool.connections);
+        return pool;
+    }
+
+    /**
+     * Checks out a connection, waiting up to the acquire timeout for one to become free
+     * @return a connection to be closed (returned) by the caller
+     * @throws SQLTimeoutException if no connection became free in time
+     */
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new IllegalStateException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        Slot slot;
+        try {
+            slot = idle.poll(acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a read connection", e);
+        }
+        totalWaitNanos.add(System.nanoTime() - start);
+        if (slot == null) {
+            timeouts.increment();
+            throw new SQLTimeoutException("No read connection became available within "
+                                          + TimeUnit.NANOSECONDS.toMillis(acquireTimeoutNanos) + " ms");
+        }
+        acquisitions.increment();
+        peakInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+        return new PooledConnection(slot);
+    }
+
+    private void release(Slot slot) {
+        inUse.decrementAndGet();
+        idle.offer(slot);
+    }
+
+    /**
+     * Drops the compiled statements of every pooled connection, e.g. after the schema changed
+     */
+    public void invalidateStatements() throws SQLException {
+        for (Slot slot : connections) {
+            slot.statements().invalidate();
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(connections.size(), inUse.get(), peakInUse.get(), acquisitions.sum(), timeouts.sum(),
+                         totalWaitNanos.sum());
+    }
+
+    @Override
+    public void close() throws SQLException {
+        closed = true;
+        SQLException failure = null;
+        for (Slot slot : connections) {
+            try {
+                slot.statements().invalidate();
+                slot.connection().close();
+            } catch (SQLException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,553 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams a registrar roster export into a {@link CourseDatabase}. Each input row is one enrollment and
+ * carries the student's and course's columns:
+ * <pre>
+ *     StudentId,FirstName,LastName,ComputingID,Crn,Subject,CourseNumber,Section,MeetingTime
+ * </pre>
+ * either as CSV with a header line, or as NDJSON with one flat object per line using the same keys.
+ *
+ * One thread parses the input into a bounded buffer while the calling thread writes it in batches, with a
+ * commit every {@code transactionSize} rows, so memory use doesn't depend on the size of the input. Each
+ * student and course is written the first time it appears - later rows only add enrollments - so the
+ * importer keeps the set of student IDs and CRNs it has seen, but nothing per input row. Rows that fail to
+ * parse or violate a constraint are rejected and reported without stopping the import.
+ */
+public class RosterImporter {
+    public enum Format {
+        CSV, NDJSON;
+
+        /**
+         * @param file a file name ending in .csv, .ndjson or .jsonl, optionally followed by .gz
+         */
+        public static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".gz")) {
+                name = name.substring(0, name.length() - ".gz".length());
+            }
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+                return NDJSON;
+            }
+            throw new IllegalArgumentException("Can't tell the roster format of " + file);
+        }
+    }
+
+    /**
+     * Counts reported to the progress listener
+     */
+    public record Progress(long rowsRead, long rowsImported, long rowsRejected) { }
+
+    /**
+     * An input row that was not imported
+     * @param lineNumber the 1-based line number in the input
+     * @param reason why the row was rejected
+     */
+    public record Rejection(long lineNumber, String reason) { }
+
+    /**
+     * Outcome of an import. Only the first {@code maxRecordedRejections} rejections are kept, rowsRejected
+     * counts all of them.
+     */
+    public record Report(long rowsRead, long rowsImported, long rowsRejected, List<Rejection> rejections,
+                         Duration elapsed) { }
+
+    private static final String[] COLUMNS = {"studentid", "firstname", "lastname", "computingid", "crn",
+                                              "subject", "coursenumber", "section", "meetingtime"};
+
+    private record RosterRow(long lineNumber, Student student, Course course) { }
+
+    /**
+     * One parsed input line - either a row or the reason it couldn't be parsed
+     */
+    private record ParsedLine(long lineNumber, RosterRow row, String error) { }
+
+    private static final ParsedLine END_OF_INPUT = new ParsedLine(-1, null, null);
+
+    private final CourseDatabase courseDatabase;
+    private int bufferCapacity = 10_000;
+    private int batchSize = 1_000;
+    private int transactionSize = 100_000;
+    private int maxRecordedRejections = 1_000;
+    private long progressInterval = 50_000;
+    private boolean bulkLoadProfile = true;
+    private Consumer<Progress> progressListener = progress -> { };
+
+    public RosterImporter(CourseDatabase courseDatabase) {
+        this.courseDatabase = courseDatabase;
+    }
+
+    /**
+     * @param bufferCapacity the number of parsed rows the parser may run ahead of the writer
+     */
+    public RosterImporter bufferCapacity(int bufferCapacity) {
+        this.bufferCapacity = requirePositive(bufferCapacity, "Buffer capacity");
+        return this;
+    }
+
+    /**
+     * @param batchSize the number of rows written per JDBC batch
+     */
+    public RosterImporter batchSize(int batchSize) {
+        this.batchSize = requirePositive(batchSize, "Batch size");
+        return this;
+    }
+
+    /**
+     * @param transactionSize the number of rows written between commits
+     */
+    public RosterImporter transactionSize(int transactionSize) {
+        this.transactionSize = requirePositive(transactionSize, "Transaction size");
+        return this;
+    }
+
+    public RosterImporter maxRecordedRejections(int maxRecordedRejections) {
+        this.maxRecordedRejections = maxRecordedRejections;
+        return this;
+    }
+
+    /**
+     * @param bulkLoadProfile whether to switch to {@link SqliteProfile#BULK_LOAD} for the duration of the import
+     */
+    public RosterImporter bulkLoadProfile(boolean bulkLoadProfile) {
+        this.bulkLoadProfile = bulkLoadProfile;
+        return this;
+    }
+
+    /**
+     * @param progressInterval report progress roughly every this many rows read
+     * @param progressListener called on the importing thread
+     */
+    public RosterImporter onProgress(long progressInterval, Consumer<Progress> progressListener) {
+        if (progressInterval < 1) {
+            throw new IllegalArgumentException("Progress interval must be at least 1");
+        }
+        this.progressInterval = progressInterval;
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    private static int requirePositive(int value, String name) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " must be at least 1");
+        }
+        return value;
+    }
+
+    /**
+     * Imports a roster file, decompressing it if its name ends in .gz
+     */
+    public Report importRoster(Path file) throws IOException, SQLException {
+        return importRoster(file, Format.of(file));
+    }
+
+    public Report importRoster(Path file, Format format) throws IOException, SQLException {
+        // the file stream gets its own resource, so it's closed even if the GZIP header is bad
+        try (InputStream fileInput = Files.newInputStream(file)) {
+            InputStream input = fileInput;
+            if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz")) {
+                input = new GZIPInputStream(fileInput, 64 * 1024);
+            }
+            try (Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8)) {
+                return importRoster(reader, format);
+            }
+        }
+    }
+
+    /**
+     * Imports a roster. Work is committed every transactionSize rows and when the import finishes - if the
+     * import fails, rows committed before the failure stay in the database. With the bulk-load profile on
+     * (the default), switching profiles also commits the transaction open before the import.
+     */
+    public Report importRoster(Reader reader, Format format) throws IOException, SQLException {
+        long start = System.nanoTime();
+        BlockingQueue<ParsedLine> buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        AtomicReference<IOException> parseFailure = new AtomicReference<>();
+        Thread parser = new Thread(() -> parse(reader, format, buffer, parseFailure), "roster-import-parser");
+        parser.setDaemon(true);
+        parser.start();
+
+        ImportRun run = new ImportRun();
+        CourseDatabase.ProfileScope profileScope = bulkLoadProfile
+                ? courseDatabase.useProfile(SqliteProfile.BULK_LOAD) : null;
+        try {
+            run.consume(buffer);
+            if (parseFailure.get() != null) {
+                courseDatabase.rollback();
+                throw parseFailure.get();
+            }
+            courseDatabase.commit();
+        } catch (SQLException | RuntimeException e) {
+            parser.interrupt();
+            courseDatabase.rollback();
+            throw e;
+        } catch (InterruptedException e) {
+            parser.interrupt();
+            courseDatabase.rollback();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while importing roster", e);
+        } finally {
+            if (profileScope != null) {
+                profileScope.close();
+            }
+        }
+        return new Report(run.rowsRead, run.rowsImported, run.rowsRejected,
+                          Collections.unmodifiableList(run.rejections), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Writer side of one import
+     */
+    private class ImportRun {
+        private final Set<Integer> knownStudents = new HashSet<>();
+        private final Set<Integer> knownCourses = new HashSet<>();
+        private final List<Rejection> rejections = new ArrayList<>();
+        private long rowsRead;
+        private long rowsImported;
+        private long rowsRejected;
+        private long rowsSinceCommit;
+        private long nextProgress = progressInterval;
+
+        void consume(BlockingQueue<ParsedLine> buffer) throws SQLException, InterruptedException {
+            List<RosterRow> batch = new ArrayList<>(batchSize);
+            while (true) {
+                ParsedLine line = buffer.take();
+                if (line == END_OF_INPUT) {
+                    break;
+                }
+                rowsRead++;
+                if (line.error() != null) {
+                    reject(line.lineNumber(), line.error());
+                } else {
+                    batch.add(line.row());
+                    if (batch.size() == batchSize) {
+                        write(batch);
+                        batch.clear();
+                    }
+                }
+                if (rowsRead >= nextProgress) {
+                    progressListener.accept(new Progress(rowsRead, rowsImported, rowsRejected));
+                    nextProgress += progressInterval;
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+            progressListener.accept(new Progress(rowsRead, rowsImported, rowsRejected));
+        }
+
+        private void write(List<RosterRow> batch) throws SQLException {
+            Set<Long> rejectedLines = new HashSet<>();
+
+            List<RosterRow> newStudentRows = new ArrayList<>();
+            for (RosterRow row : batch) {
+                if (knownStudents.add(row.student().getId())) {
+                    newStudentRows.add(row);
+                }
+            }
+            BatchResult<Student> students = courseDatabase.upsertStudents(
+                    newStudentRows.stream().map(RosterRow::student).toList(), batchSize);
+            for (BatchResult.Conflict<Student> conflict : students.getConflicts()) {
+                RosterRow row = newStudentRows.get(conflict.index());
+                knownStudents.remove(row.student().getId());
+                rejectedLines.add(row.lineNumber());
+                reject(row.lineNumber(), "student " + row.student().getId() + ": " + conflict.cause().getMessage());
+            }
+
+            List<RosterRow> newCourseRows = new ArrayList<>();
+            for (RosterRow row : batch) {
+                if (!rejectedLines.contains(row.lineNumber()) && knownCourses.add(row.course().getCrn())) {
+                    newCourseRows.add(row);
+                }
+            }
+            BatchResult<Course> courses = courseDatabase.upsertCourses(
+                    newCourseRows.stream().map(RosterRow::course).toList(), batchSize);
+            for (BatchResult.Conflict<Course> conflict : courses.getConflicts()) {
+                RosterRow row = newCourseRows.get(conflict.index());
+                knownCourses.remove(row.course().getCrn());
+                rejectedLines.add(row.lineNumber());
+                reject(row.lineNumber(), "course " + row.course().getCrn() + ": " + conflict.cause().getMessage());
+            }
+
+            List<RosterRow> enrollmentRows = new ArrayList<>(batch.size());
+            List<Enrollment> enrollments = new ArrayList<>(batch.size());
+            for (RosterRow row : batch) {
+                if (!rejectedLines.contains(row.lineNumber())) {
+                    enrollmentRows.add(row);
+                    enrollments.add(Enrollment.of(row.student(), row.course()));
+                }
+            }
+            BatchResult<Enrollment> enrolled = courseDatabase.addEnrollments(enrollments, batchSize);
+            for (BatchResult.Conflict<Enrollment> conflict : enrolled.getConflicts()) {
+                reject(enrollmentRows.get(conflict.index()).lineNumber(),
+                       "enrollment: " + conflict.cause().getMessage());
+            }
+            rowsImported += enrolled.getSucceeded();
+
+            rowsSinceCommit += batch.size();
+            if (rowsSinceCommit >= transactionSize) {
+                courseDatabase.commit();
+                rowsSinceCommit = 0;
+            }
+        }
+
+        private void reject(long lineNumber, String reason) {
+            rowsRejected++;
+            if (rejections.size() < maxRecordedRejections) {
+                rejections.add(new Rejection(lineNumber, reason));
+            }
+        }
+    }
+
+    private static void parse(Reader reader, Format format, BlockingQueue<ParsedLine> buffer,
+                              AtomicReference<IOException> failure) {
+        try (BufferedReader lines = new BufferedReader(reader, 64 * 1024)) {
+            long lineNumber = 0;
+            int[] columnOrder = null;
+            String line;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (format == Format.CSV && columnOrder == null) {
+                    columnOrder = readHeader(parseCsvLine(line));
+                    continue;
+                }
+                buffer.put(parseLine(lineNumber, line, format, columnOrder));
+            }
+        } catch (IOException e) {
+            failure.set(e);
+        } catch (RuntimeException e) {
+            // e.g. an unterminated quote in the header - rows report their own errors
+            failure.set(new IOException("Unreadable roster: " + e.getMessage(), e));
+        } catch (InterruptedException e) {
+            // the writer gave up - keep the flag so the put below doesn't block
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                // the writer waits for this even if parsing failed
+                buffer.put(END_OF_INPUT);
+            } catch (InterruptedException e) {
+                // the writer gave up
+            }
+        }
+    }
+
+    private static int[] readHeader(List<String> header) throws IOException {
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            positions.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        int[] columnOrder = new int[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            Integer position = positions.get(COLUMNS[i]);
+            if (position == null) {
+                throw new IOException("Roster header is missing the " + COLUMNS[i] + " column");
+            }
+            columnOrder[i] = position;
+        }
+        return columnOrder;
+    }
+
+    private static ParsedLine parseLine(long lineNumber, String line, Format format, int[] columnOrder) {
+        try {
+            String[] values = new String[COLUMNS.length];
+            if (format == Format.CSV) {
+                List<String> fields = parseCsvLine(line);
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    values[i] = columnOrder[i] < fields.size() ? fields.get(columnOrder[i]) : null;
+                }
+            } else {
+                Map<String, String> object = parseFlatJsonObject(line);
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    values[i] = object.get(COLUMNS[i]);
+                }
+            }
+            Student student = new Student(parseInt(values[0], "StudentId"), values[1],
+                                          required(values[2], "LastName"), required(values[3], "ComputingID"));
+            Course course = new Course(parseInt(values[4], "Crn"), values[5], parseInt(values[6], "CourseNumber"),
+                                       parseInt(values[7], "Section"), values[8]);
+            return new ParsedLine(lineNumber, new RosterRow(lineNumber, student, course), null);
+        } catch (IllegalArgumentException e) {
+            return new ParsedLine(lineNumber, null, e.getMessage());
+        }
+    }
+
+    private static String required(String value, String column) {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("missing " + column);
+        }
+        return value;
+    }
+
+    private static int parseInt(String value, String column) {
+        try {
+            return Integer.parseInt(required(value, column).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + column + ": " + value);
+        }
+    }
+
+    /**
+     * Splits one CSV line, honoring double-quoted fields with "" escapes. Quoted fields can't span lines.
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>(COLUMNS.length);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Parses a JSON object whose values are strings, numbers, booleans or null. Keys are lower-cased and
+     * values returned as text, null values as null.
+     */
+    static Map<String, String> parseFlatJsonObject(String line) {
+        Map<String, String> object = new HashMap<>();
+        int[] position = {skipWhitespace(line, 0)};
+        expect(line, position, '{');
+        if (peek(line, position) == '}') {
+            return object;
+        }
+        while (true) {
+            String key = readJsonString(line, position);
+            expect(line, position, ':');
+            object.put(key.toLowerCase(Locale.ROOT), readJsonValue(line, position));
+            char next = peek(line, position);
+            position[0]++;
+            if (next == '}') {
+                return object;
+            }
+            if (next != ',') {
+                throw new IllegalArgumentException("malformed JSON at column " + position[0]);
+            }
+        }
+    }
+
+    private static int skipWhitespace(String line, int index) {
+        while (index < line.length() && Character.isWhitespace(line.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static char peek(String line, int[] position) {
+        position[0] = skipWhitespace(line, position[0]);
+        if (position[0] >= line.length()) {
+            throw new IllegalArgumentException("truncated JSON");
+        }
+        return line.charAt(position[0]);
+    }
+
+    private static void expect(String line, int[] position, char expected) {
+        if (peek(line, position) != expected) {
+            throw new IllegalArgumentException("malformed JSON at column " + (position[0] + 1)
+                                               + ", expected '" + expected + "'");
+        }
+        position[0]++;
+    }
+
+    private static String readJsonValue(String line, int[] position) {
+        char first = peek(line, position);
+        if (first == '"') {
+            return readJsonString(line, position);
+        }
+        int start = position[0];
+        while (position[0] < line.length() && ",} \t".indexOf(line.charAt(position[0])) < 0) {
+            position[0]++;
+        }
+        String literal = line.substring(start, position[0]);
+        if (literal.equals("null")) {
+            return null;
+        }
+        if (literal.isEmpty() || first == '{' || first == '[') {
+            throw new IllegalArgumentException("unsupported JSON value at column " + (start + 1));
+        }
+        return literal;
+    }
+
+    private static String readJsonString(String line, int[] position) {
+        expect(line, position, '"');
+        StringBuilder value = new StringBuilder();
+        while (position[0] < line.length()) {
+            char c = line.charAt(position[0]++);
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (position[0] >= line.length()) {
+                break;
+            }
+            char escaped = line.charAt(position[0]++);
+            switch (escaped) {
+                case 'n' -> value.append('\n');
+                case 't' -> value.append('\t');
+                case 'r' -> value.append('\r');
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'u' -> {
+                    if (position[0] + 4 > line.length()) {
+                        throw new IllegalArgumentException("truncated JSON escape");
+                    }
+                    value.append((char) Integer.parseInt(line.substring(position[0], position[0] + 4), 16));
+                    position[0] += 4;
+                }
+                default -> value.append(escaped);
+            }
+        }
+        throw new IllegalArgumentException("unterminated JSON string");
+    }
+}
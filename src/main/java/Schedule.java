@@ -0,0 +1,48 @@
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A fully wired object graph of students and courses - each student's course list and each course's
+ * student list reference the same instances held here.
+ */
+public class Schedule {
+    private final Map<Integer, Student> studentsById;
+    private final Map<Integer, Course> coursesByCrn;
+
+    Schedule(Map<Integer, Student> studentsById, Map<Integer, Course> coursesByCrn) {
+        this.studentsById = studentsById;
+        this.coursesByCrn = coursesByCrn;
+    }
+
+    /**
+     * @return the loaded students sorted by student ID
+     */
+    public Collection<Student> getStudents() {
+        return Collections.unmodifiableCollection(studentsById.values());
+    }
+
+    /**
+     * @return the loaded courses sorted by CRN
+     */
+    public Collection<Course> getCourses() {
+        return Collections.unmodifiableCollection(coursesByCrn.values());
+    }
+
+    public Optional<Student> getStudent(int studentID) {
+        return Optional.ofNullable(studentsById.get(studentID));
+    }
+
+    public Optional<Course> getCourse(int crn) {
+        return Optional.ofNullable(coursesByCrn.get(crn));
+    }
+
+    @Override
+    public String toString() {
+        return "Schedule{" +
+               "students=" + studentsById.size() +
+               ", courses=" + coursesByCrn.size() +
+               '}';
+    }
+}
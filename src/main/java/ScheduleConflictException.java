@@ -0,0 +1,36 @@
+import java.sql.SQLException;
+
+/**
+ * Thrown by {@link CourseDatabase#addEnrollmentCheckingConflicts} when the requested course meets at the
+ * same time as one the student is already enrolled in
+ */
+public class ScheduleConflictException extends SQLException {
+    private static final long serialVersionUID = 1L;
+
+    private final int studentId;
+    private final int requestedCrn;
+    private final int conflictingCrn;
+
+    public ScheduleConflictException(int studentId, int requestedCrn, int conflictingCrn) {
+        super("Student " + studentId + " can't enroll in CRN " + requestedCrn
+              + ", it meets at the same time as CRN " + conflictingCrn);
+        this.studentId = studentId;
+        this.requestedCrn = requestedCrn;
+        this.conflictingCrn = conflictingCrn;
+    }
+
+    public int getStudentId() {
+        return studentId;
+    }
+
+    public int getRequestedCrn() {
+        return requestedCrn;
+    }
+
+    /**
+     * @return the CRN of the student's existing course that overlaps the requested one
+     */
+    public int getConflictingCrn() {
+        return conflictingCrn;
+    }
+}
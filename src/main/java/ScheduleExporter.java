@@ -0,0 +1,254 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Dumps Students, Courses and Enrollments as CSV or NDJSON. Rows are written straight from the database
+ * cursor to the output - no Student/Course objects or lists are built - so a full dump runs in constant
+ * memory. CSV output starts with a header line naming the columns; an empty table produces an empty file.
+ */
+public class ScheduleExporter {
+    public enum Format {
+        CSV(".csv"), NDJSON(".ndjson");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * Row counts and duration of a full export
+     */
+    public record Report(long students, long courses, long enrollments, Duration elapsed) { }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CourseDatabase courseDatabase;
+
+    public ScheduleExporter(CourseDatabase courseDatabase) {
+        this.courseDatabase = courseDatabase;
+    }
+
+    /**
+     * Writes students.csv, courses.csv and enrollments.csv (or .ndjson) into the directory, with a .gz
+     * suffix when gzip is on
+     */
+    public Report exportSchedule(Path directory, Format format, boolean gzip) throws IOException, SQLException {
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+        long students;
+        try (Writer writer = openWriter(directory.resolve(fileName("students", format, gzip)), gzip)) {
+            students = exportStudents(writer, format);
+        }
+        long courses;
+        try (Writer writer = openWriter(directory.resolve(fileName("courses", format, gzip)), gzip)) {
+            courses = exportCourses(writer, format);
+        }
+        long enrollments;
+        try (Writer writer = openWriter(directory.resolve(fileName("enrollments", format, gzip)), gzip)) {
+            enrollments = exportEnrollments(writer, format);
+        }
+        return new Report(students, courses, enrollments, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static String fileName(String table, Format format, boolean gzip) {
+        return table + format.getExtension() + (gzip ? ".gz" : "");
+    }
+
+    /**
+     * Opens a buffered UTF-8 writer on the file, gzip-compressed if requested
+     */
+    public static Writer openWriter(Path file, boolean gzip) throws IOException {
+        return openWriter(Files.newOutputStream(file), gzip);
+    }
+
+    public static Writer openWriter(OutputStream output, boolean gzip) throws IOException {
+        if (gzip) {
+            output = new GZIPOutputStream(output, BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * @return the number of students written
+     */
+    public long exportStudents(Writer writer, Format format) throws IOException, SQLException {
+        return export(writer, format, courseDatabase::scanStudentRows);
+    }
+
+    /**
+     * @return the number of courses written
+     */
+    public long exportCourses(Writer writer, Format format) throws IOException, SQLException {
+        return export(writer, format, courseDatabase::scanCourseRows);
+    }
+
+    /**
+     * @return the number of enrollments written
+     */
+    public long exportEnrollments(Writer writer, Format format) throws IOException, SQLException {
+        return export(writer, format, courseDatabase::scanEnrollmentRows);
+    }
+
+    @FunctionalInterface
+    private interface Scan {
+        long run(CourseDatabase.RowVisitor visitor) throws SQLException;
+    }
+
+    private long export(Writer writer, Format format, Scan scan) throws IOException, SQLException {
+        RowWriter rowWriter = new RowWriter(writer, format);
+        try {
+            long rows = scan.run(row -> {
+                try {
+                    rowWriter.write(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+            return rows;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Formats rows of one scan - column names and types are read from the first row's metadata
+     */
+    private static class RowWriter {
+        private final Writer writer;
+        private final Format format;
+        private String[] columns;
+        private boolean[] numeric;
+
+        RowWriter(Writer writer, Format format) {
+            this.writer = writer;
+            this.format = format;
+        }
+
+        void write(ResultSet row) throws SQLException, IOException {
+            if (columns == null) {
+                readMetadata(row.getMetaData());
+                if (format == Format.CSV) {
+                    for (int i = 0; i < columns.length; i++) {
+                        if (i > 0) {
+                            writer.write(',');
+                        }
+                        writeCsvField(columns[i]);
+                    }
+                    writer.write('\n');
+                }
+            }
+            if (format == Format.CSV) {
+                writeCsvRow(row);
+            } else {
+                writeJsonRow(row);
+            }
+        }
+
+        private void readMetadata(ResultSetMetaData metadata) throws SQLException {
+            columns = new String[metadata.getColumnCount()];
+            numeric = new boolean[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = metadata.getColumnLabel(i + 1);
+                int type = metadata.getColumnType(i + 1);
+                numeric[i] = type == Types.INTEGER || type == Types.BIGINT || type == Types.REAL
+                             || type == Types.DOUBLE || type == Types.FLOAT || type == Types.NUMERIC;
+            }
+        }
+
+        private void writeCsvRow(ResultSet row) throws SQLException, IOException {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                String value = row.getString(i + 1);
+                if (value != null) {
+                    writeCsvField(value);
+                }
+            }
+            writer.write('\n');
+        }
+
+        private void writeCsvField(String value) throws IOException {
+            boolean needsQuotes = false;
+            for (int i = 0; i < value.length() && !needsQuotes; i++) {
+                char c = value.charAt(i);
+                needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!needsQuotes) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    writer.write('"');
+                }
+                writer.write(c);
+            }
+            writer.write('"');
+        }
+
+        private void writeJsonRow(ResultSet row) throws SQLException, IOException {
+            writer.write('{');
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeJsonString(columns[i]);
+                writer.write(':');
+                String value = row.getString(i + 1);
+                if (value == null) {
+                    writer.write("null");
+                } else if (numeric[i]) {
+                    writer.write(value);
+                } else {
+                    writeJsonString(value);
+                }
+            }
+            writer.write("}\n");
+        }
+
+        private void writeJsonString(String value) throws IOException {
+            writer.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> writer.write("\\\"");
+                    case '\\' -> writer.write("\\\\");
+                    case '\n' -> writer.write("\\n");
+                    case '\r' -> writer.write("\\r");
+                    case '\t' -> writer.write("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            writer.write(String.format("\\u%04x", (int) c));
+                        } else {
+                            writer.write(c);
+                        }
+                    }
+                }
+            }
+            writer.write('"');
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory count of taken seats per CRN, so that checking for a free seat doesn't need a COUNT(*) query.
+ * Counters are loaded from the database on first use.
+ *
+ * The counters follow every enrollment write of the owning {@link CourseDatabase}. They are dropped on
+ * rollback and reloaded on next use, which keeps them consistent with the table.
+ *
+ * Every method holds this object's lock, and so does the loader query. CourseDatabase keeps holding it
+ * across a seat check and the insert that takes the seat, because both run on the single writer connection,
+ * which must not be used by two threads at once. Per-course lock striping wouldn't help here: the
+ * connection serializes the writes anyway.
+ */
+public class SeatCounters {
+    /**
+     * Loads a course's capacity and currently taken seats
+     */
+    @FunctionalInterface
+    interface Loader {
+        /**
+         * @return {capacity, taken}, or null if there is no such course
+         */
+        int[] load(int crn) throws SQLException;
+    }
+
+    // CRN -> {capacity, taken}
+    private final Map<Integer, int[]> seats = new HashMap<>();
+    private final Loader loader;
+
+    SeatCounters(Loader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Takes a seat if one is free
+     * @return false if the course is full or doesn't exist
+     */
+    synchronized boolean tryTake(int crn) throws SQLException {
+        int[] course = load(crn);
+        if (course == null || (course[0] != Course.UNLIMITED && course[1] >= course[0])) {
+            return false;
+        }
+        course[1]++;
+        return true;
+    }
+
+    /**
+     * Records seats taken or freed by writes that didn't go through {@link #tryTake} - a no-op for courses
+     * whose counter isn't loaded yet, since loading counts them
+     */
+    synchronized void adjust(int crn, int delta) {
+        int[] course = seats.get(crn);
+        if (course != null) {
+            course[1] += delta;
+        }
+    }
+
+    /**
+     * @return the free seats, {@link Course#UNLIMITED} if the course has no limit, or 0 if there is no such
+     * course
+     */
+    synchronized int available(int crn) throws SQLException {
+        int[] course = load(crn);
+        if (course == null) {
+            return 0;
+        }
+        return course[0] == Course.UNLIMITED ? Course.UNLIMITED : Math.max(0, course[0] - course[1]);
+    }
+
+    private int[] load(int crn) throws SQLException {
+        int[] course = seats.get(crn);
+        if (course == null) {
+            course = loader.load(crn);
+            if (course != null) {
+                seats.put(crn, course);
+            }
+        }
+        return course;
+    }
+
+    /**
+     * Forgets one course's counter, e.g. after its capacity changed
+     */
+    synchronized void invalidate(int crn) {
+        seats.remove(crn);
+    }
+
+    synchronized void clear() {
+        seats.clear();
+    }
+}
@@ -0,0 +1,414 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Spreads courses and their enrollments over several SQLite files, so that writes to different shards don't
+ * queue behind a single writer.
+ *
+ * Each course - along with its enrollments - lives on the shard picked by the {@link ShardKey}. Students are
+ * reference data every enrollment points at, so they are written to every shard; that keeps the foreign keys
+ * local to a shard, at the cost of student writes touching all of them.
+ *
+ * Every shard is owned by its own writer thread: writes to one shard run in order, writes to different shards
+ * run in parallel, and each write is committed (or rolled back on failure) on its own. Writes that span shards -
+ * student writes and batches - are not atomic across shards. With a read pool configured, reads go straight to
+ * the shards' read pools and never wait behind queued writes; otherwise they share the shard's writer thread.
+ * Reads that can't be routed to one shard, such as a student's full course list, fan out to every shard in
+ * parallel and merge the results.
+ */
+public class ShardedCourseDatabase {
+    /**
+     * Picks the shard a course (and so its enrollments) lives on
+     */
+    @FunctionalInterface
+    public interface ShardKey {
+        /**
+         * @return a shard index from 0 to shardCount - 1
+         */
+        int shardOf(Course course, int shardCount);
+
+        /**
+         * Hashes the given course attribute, e.g. {@code hashing(Course::getSubject)}
+         */
+        static ShardKey hashing(Function<Course, ?> attribute) {
+            return (course, shardCount) -> Math.floorMod(Objects.hashCode(attribute.apply(course)), shardCount);
+        }
+
+        static ShardKey bySubject() {
+            return hashing(Course::getSubject);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ShardOperation<T> {
+        T apply(CourseDatabase shard) throws SQLException;
+    }
+
+    private final List<CourseDatabase> shards;
+    private final ShardKey shardKey;
+    private final List<ExecutorService> writers = new ArrayList<>();
+    // runs reads in pooled mode, null otherwise
+    private ExecutorService readers;
+
+    /**
+     * @param shardFilenames one SQLite file per shard
+     * @param shardKey routes courses to shards - must stay the same for the life of the files
+     */
+    public ShardedCourseDatabase(List<String> shardFilenames, ShardKey shardKey) {
+        this(shardFilenames, shardKey, CourseDatabaseConfig.DEFAULT);
+    }
+
+    /**
+     * @param config applied to every shard
+     */
+    public ShardedCourseDatabase(List<String> shardFilenames, ShardKey shardKey, CourseDatabaseConfig config) {
+        if (shardFilenames.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shardKey = shardKey;
+        shards = new ArrayList<>();
+        for (String filename : shardFilenames) {
+            shards.add(new CourseDatabase(filename, config));
+        }
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * @return the index of the shard holding the course and its enrollments
+     */
+    public int shardOf(Course course) {
+        int shard = shardKey.shardOf(course, shards.size());
+        if (shard < 0 || shard >= shards.size()) {
+            throw new IllegalStateException("Shard key returned " + shard + " for " + shards.size() + " shards");
+        }
+        return shard;
+    }
+
+    public void connect() throws SQLException {
+        if (!writers.isEmpty()) {
+            throw new IllegalStateException("The shards are already connected");
+        }
+        for (int i = 0; i < shards.size(); i++) {
+            String name = "course-shard-" + i + "-writer";
+            writers.add(Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }));
+        }
+        onEachWriter(shard -> {
+            shard.connect();
+            return null;
+        });
+        if (shards.get(0).isPooled()) {
+            readers = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "course-shard-reader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void createTablesIfNeeded() throws SQLException {
+        writeAllShards(shard -> {
+            shard.createTablesIfNeeded();
+            return null;
+        });
+    }
+
+    /**
+     * Disconnects every shard and stops the writer threads, after operations already submitted have finished
+     */
+    public void disconnect() throws SQLException {
+        if (writers.isEmpty()) {
+            throw new IllegalStateException("The shards are not connected");
+        }
+        if (readers != null) {
+            // let running reads finish before their connections close
+            readers.shutdown();
+            try {
+                readers.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            onEachWriter(shard -> {
+                shard.disconnect();
+                return null;
+            });
+        } finally {
+            readers = null;
+            for (ExecutorService writer : writers) {
+                writer.shutdown();
+            }
+            try {
+                for (ExecutorService writer : writers) {
+                    writer.awaitTermination(1, TimeUnit.MINUTES);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writers.clear();
+        }
+    }
+
+    public void addNewStudent(Student student) throws SQLException {
+        writeAllShards(shard -> {
+            shard.addNewStudent(student);
+            return null;
+        });
+    }
+
+    public void upsertStudent(Student student) throws SQLException {
+        writeAllShards(shard -> {
+            shard.upsertStudent(student);
+            return null;
+        });
+    }
+
+    public void addNewCourse(Course course) throws SQLException {
+        await(write(shardOf(course), shard -> {
+            shard.addNewCourse(course);
+            return null;
+        }));
+    }
+
+    public void upsertCourse(Course course) throws SQLException {
+        await(write(shardOf(course), shard -> {
+            shard.upsertCourse(course);
+            return null;
+        }));
+    }
+
+    /**
+     * Upserts the courses, with each shard's share written in parallel as one batch
+     * @return the number of courses written and any rejected by a constraint, with conflict indexes into the
+     * given collection
+     */
+    public BatchResult<Course> upsertCourses(Collection<Course> courses) throws SQLException {
+        Map<Integer, List<Course>> coursesByShard = new LinkedHashMap<>();
+        // position of each shard's courses in the submitted collection
+        Map<Integer, List<Integer>> indexesByShard = new LinkedHashMap<>();
+        int index = 0;
+        for (Course course : courses) {
+            int shard = shardOf(course);
+            coursesByShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(course);
+            indexesByShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(index++);
+        }
+        List<Integer> shardOrder = new ArrayList<>(coursesByShard.keySet());
+        List<CompletableFuture<BatchResult<Course>>> writes = new ArrayList<>();
+        for (int shard : shardOrder) {
+            List<Course> shardCourses = coursesByShard.get(shard);
+            writes.add(write(shard, database -> database.upsertCourses(shardCourses)));
+        }
+        List<BatchResult<Course>> shardResults = awaitAll(writes);
+
+        BatchResult<Course> result = new BatchResult<>();
+        List<BatchResult.Conflict<Course>> conflicts = new ArrayList<>();
+        for (int i = 0; i < shardResults.size(); i++) {
+            List<Integer> indexes = indexesByShard.get(shardOrder.get(i));
+            result.addSucceeded(shardResults.get(i).getSucceeded());
+            for (BatchResult.Conflict<Course> conflict : shardResults.get(i).getConflicts()) {
+                conflicts.add(new BatchResult.Conflict<>(indexes.get(conflict.index()), conflict.item(),
+                                                         conflict.cause()));
+            }
+        }
+        conflicts.sort(Comparator.comparingInt(BatchResult.Conflict::index));
+        for (BatchResult.Conflict<Course> conflict : conflicts) {
+            result.addConflict(conflict.index(), conflict.item(), conflict.cause());
+        }
+        return result;
+    }
+
+    public void addEnrollment(Student student, Course course) throws SQLException {
+        await(write(shardOf(course), shard -> {
+            shard.addEnrollment(student, course);
+            return null;
+        }));
+    }
+
+    public boolean removeEnrollment(Student student, Course course) throws SQLException {
+        return await(write(shardOf(course), shard -> shard.removeEnrollment(student, course)));
+    }
+
+    /**
+     * Gets a **shallow copy** of a student. Every shard holds every student, so the lookups are spread by ID.
+     */
+    public Optional<Student> getStudent(int studentID) throws SQLException {
+        return await(read(Math.floorMod(studentID, shards.size()), shard -> shard.getStudent(studentID)));
+    }
+
+    public List<Student> getStudents() throws SQLException {
+        return await(read(0, CourseDatabase::getStudents));
+    }
+
+    /**
+     * @see CourseDatabase#getStudents(int, int)
+     */
+    public List<Student> getStudents(int afterId, int limit) throws SQLException {
+        return await(read(0, shard -> shard.getStudents(afterId, limit)));
+    }
+
+    /**
+     * Gets a course by CRN. The CRN alone doesn't identify the shard, so every shard is asked.
+     */
+    public Optional<Course> getCourse(int crn) throws SQLException {
+        for (Optional<Course> course : onAllShards(shard -> shard.getCourse(crn))) {
+            if (course.isPresent()) {
+                return course;
+            }
+        }
+        return Optional.empty();
+    }
+
+    public List<Student> getStudentsByCourse(Course course) throws SQLException {
+        return await(read(shardOf(course), shard -> shard.getStudentsByCourse(course)));
+    }
+
+    public List<Student> getStudentsByCourse(Course course, int afterId, int limit) throws SQLException {
+        return await(read(shardOf(course), shard -> shard.getStudentsByCourse(course, afterId, limit)));
+    }
+
+    /**
+     * Gets the courses a student is enrolled in across all shards
+     * @return the courses sorted by CRN
+     */
+    public List<Course> getCoursesByStudent(Student student) throws SQLException {
+        List<Course> courses = new ArrayList<>();
+        for (List<Course> shardCourses : onAllShards(shard -> shard.getCoursesByStudent(student))) {
+            courses.addAll(shardCourses);
+        }
+        courses.sort(Comparator.comparingInt(Course::getCrn));
+        return courses;
+    }
+
+    private <T> List<T> onAllShards(ShardOperation<T> operation) throws SQLException {
+        List<CompletableFuture<T>> results = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            results.add(read(i, operation));
+        }
+        return awaitAll(results);
+    }
+
+    /**
+     * Runs the operation on every shard's writer thread without committing, e.g. to connect
+     */
+    private <T> List<T> onEachWriter(ShardOperation<T> operation) throws SQLException {
+        List<CompletableFuture<T>> results = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            CourseDatabase shard = shards.get(i);
+            results.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return operation.apply(shard);
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, writer(i)));
+        }
+        return awaitAll(results);
+    }
+
+    private <T> List<T> writeAllShards(ShardOperation<T> operation) throws SQLException {
+        List<CompletableFuture<T>> results = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            results.add(write(i, operation));
+        }
+        return awaitAll(results);
+    }
+
+    /**
+     * Runs a read on the read pool when the shards have one, so it doesn't queue behind writes - otherwise the
+     * shard's connection can only be used from its writer thread
+     */
+    private <T> CompletableFuture<T> read(int shardIndex, ShardOperation<T> operation) {
+        CourseDatabase shard = shards.get(shardIndex);
+        ExecutorService executor = writer(shardIndex);
+        if (readers != null) {
+            executor = readers;
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return operation.apply(shard);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private <T> CompletableFuture<T> write(int shardIndex, ShardOperation<T> operation) {
+        CourseDatabase shard = shards.get(shardIndex);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                T result = operation.apply(shard);
+                shard.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    shard.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                }
+                throw new CompletionException(e);
+            }
+        }, writer(shardIndex));
+    }
+
+    private ExecutorService writer(int shardIndex) {
+        if (writers.isEmpty()) {
+            throw new IllegalStateException("The shards are not connected");
+        }
+        return writers.get(shardIndex);
+    }
+
+    private static <T> T await(CompletableFuture<T> result) throws SQLException {
+        return awaitAll(List.of(result)).get(0);
+    }
+
+    /**
+     * Waits for every result, so no shard is still working when this returns. The first failure is thrown with
+     * the others suppressed.
+     */
+    private static <T> List<T> awaitAll(List<CompletableFuture<T>> results) throws SQLException {
+        List<T> values = new ArrayList<>();
+        Throwable failure = null;
+        for (CompletableFuture<T> result : results) {
+            try {
+                values.add(result.join());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() == null ? e : e.getCause();
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure instanceof SQLException sqlException) {
+            throw sqlException;
+        }
+        if (failure instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (failure != null) {
+            throw new SQLException("Shard operation failed", failure);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,252 @@
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConnection;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies a live database file into read-only snapshots with SQLite's online backup API, so that reports can run
+ * against a {@link CourseDatabase} opened over the latest snapshot instead of contending with registration writes.
+ *
+ * The copy is incremental - {@code pagesPerStep} pages at a time, sleeping between steps so writers on the live
+ * file aren't locked out for the whole copy. Each snapshot goes to a new generation-numbered file, which is only
+ * published once it's complete; older snapshots are deleted once two newer ones exist. Copy durations are reported
+ * to the {@link CourseDatabaseMetrics} as the "snapshotCopy" operation (rows = pages copied).
+ */
+public class SnapshotManager implements AutoCloseable {
+    private static final int SQLITE_OK = 0;
+    private static final int STEP_SLEEP_MILLIS = 10;
+    private static final int BUSY_RETRIES = 100;
+    private static final int SNAPSHOTS_KEPT = 2;
+
+    /**
+     * A complete snapshot file
+     * @param file the snapshot database file
+     * @param generation increases by one per snapshot taken
+     * @param takenAt when the copy finished
+     * @param copyDuration how long the copy took
+     * @param pageCount the size of the copied database, in pages
+     */
+    public record Snapshot(Path file, long generation, Instant takenAt, Duration copyDuration, int pageCount) {
+        public Duration getAge() {
+            return Duration.between(takenAt, Instant.now());
+        }
+    }
+
+    private final String sourceFilename;
+    private final Path directory;
+    private final int pagesPerStep;
+    // null when instrumentation is disabled
+    private final CourseDatabaseMetrics metrics;
+    private final AtomicLong failures = new AtomicLong();
+    private volatile Exception lastFailure;
+    // guarded by this
+    private final Deque<Snapshot> retained = new ArrayDeque<>();
+    private Connection source;
+    private long generation;
+    private volatile Snapshot latest;
+    private ScheduledExecutorService scheduler;
+
+    public SnapshotManager(String sourceFilename, Path directory) {
+        this(sourceFilename, directory, 256, null);
+    }
+
+    /**
+     * @param sourceFilename the live SQLite file to copy
+     * @param directory where snapshot files are written
+     * @param pagesPerStep pages copied per backup step, or -1 to copy everything in one step
+     * @param metrics receives copy durations, may be null
+     */
+    public SnapshotManager(String sourceFilename, Path directory, int pagesPerStep, CourseDatabaseMetrics metrics) {
+        if (pagesPerStep == 0 || pagesPerStep < -1) {
+            throw new IllegalArgumentException("pagesPerStep must be positive, or -1 for a single step");
+        }
+        this.sourceFilename = sourceFilename;
+        this.directory = directory;
+        this.pagesPerStep = pagesPerStep;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Takes a snapshot every {@code interval}, starting immediately. A failed refresh is counted in
+     * {@link #getFailures()} (see {@link #getLastFailure()}), the previous snapshot stays current and the
+     * schedule carries on.
+     */
+    public synchronized void start(Duration interval) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Snapshots are already scheduled");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "course-db-snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (SQLException | IOException | RuntimeException e) {
+                // already counted - keep serving the previous snapshot, and don't let it escape, which would
+                // silently cancel the schedule
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Copies the live database into a new snapshot and publishes it as the latest
+     * @return the new snapshot
+     */
+    public synchronized Snapshot refresh() throws SQLException, IOException {
+        try {
+            return copy();
+        } catch (SQLException | IOException | RuntimeException e) {
+            failures.incrementAndGet();
+            lastFailure = e;
+            throw e;
+        }
+    }
+
+    private Snapshot copy() throws SQLException, IOException {
+        long start = System.nanoTime();
+        Path file = directory.resolve("snapshot-" + (generation + 1) + ".db");
+        int[] pageCount = new int[1];
+        try {
+            Files.createDirectories(directory);
+            Files.deleteIfExists(file);
+            int rc = sourceConnection().unwrap(SQLiteConnection.class).getDatabase()
+                    .backup("main", file.toString(), (remaining, pages) -> pageCount[0] = pages,
+                            STEP_SLEEP_MILLIS, BUSY_RETRIES, pagesPerStep);
+            if (rc != SQLITE_OK) {
+                throw new SQLException("Snapshot of " + sourceFilename + " failed", null, rc);
+            }
+        } catch (SQLException | IOException | RuntimeException e) {
+            record(start, pageCount[0], true);
+            deleteQuietly(file);
+            throw e;
+        }
+        long elapsed = record(start, pageCount[0], false);
+        Snapshot snapshot = new Snapshot(file, ++generation, Instant.now(), Duration.ofNanos(elapsed), pageCount[0]);
+        latest = snapshot;
+        retained.addLast(snapshot);
+        while (retained.size() > SNAPSHOTS_KEPT) {
+            // readers may still have it open, in which case it goes once they're done (or not at all on Windows)
+            deleteQuietly(retained.removeFirst().file());
+        }
+        return snapshot;
+    }
+
+    private long record(long start, int pages, boolean failed) {
+        long elapsed = System.nanoTime() - start;
+        if (metrics != null) {
+            metrics.recordOperation("snapshotCopy", elapsed, pages, failed);
+        }
+        return elapsed;
+    }
+
+    private Connection sourceConnection() throws SQLException {
+        if (source == null || source.isClosed()) {
+            SQLiteConfig readOnly = new SQLiteConfig();
+            readOnly.setReadOnly(true);
+            source = DriverManager.getConnection("jdbc:sqlite:" + sourceFilename, readOnly.toProperties());
+        }
+        return source;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // best effort, the next refresh doesn't reuse the name
+        }
+    }
+
+    /**
+     * Opens a read-only database over the latest snapshot. The caller owns it and must disconnect it; it keeps
+     * reading the same snapshot even after newer ones are published.
+     * @throws IllegalStateException if no snapshot has been taken yet
+     */
+    public CourseDatabase openLatest() throws SQLException {
+        return openLatest(CourseDatabaseConfig.builder());
+    }
+
+    /**
+     * @param config settings for the snapshot database, e.g. caches or metrics - it's always opened read-only,
+     * without changing the given builder
+     */
+    public CourseDatabase openLatest(CourseDatabaseConfig.Builder config) throws SQLException {
+        Snapshot snapshot = latest;
+        if (snapshot == null) {
+            throw new IllegalStateException("No snapshot has been taken yet");
+        }
+        CourseDatabase database = new CourseDatabase(snapshot.file().toString(), config.copy().readOnly(true).build());
+        database.connect();
+        return database;
+    }
+
+    /**
+     * @return the latest complete snapshot, or null if none has been taken yet
+     */
+    public Snapshot getLatest() {
+        return latest;
+    }
+
+    /**
+     * @return how long ago the latest snapshot was taken, or null if none has been taken yet
+     */
+    public Duration getSnapshotAge() {
+        Snapshot snapshot = latest;
+        return snapshot == null ? null : snapshot.getAge();
+    }
+
+    public synchronized long getSnapshotsTaken() {
+        return generation;
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return the exception that failed the most recent failed refresh, or null if none has failed
+     */
+    public Exception getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Stops the schedule and closes the source connection. Snapshot files are left in place.
+     */
+    @Override
+    public void close() throws SQLException {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = scheduler;
+            scheduler = null;
+        }
+        if (running != null) {
+            running.shutdownNow();
+            try {
+                running.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (source != null) {
+                source.close();
+                source = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Named sets of SQLite PRAGMAs applied when a {@link CourseDatabase} connects, or temporarily through
+ * {@link CourseDatabase#useProfile(SqliteProfile)}.
+ */
+public enum SqliteProfile {
+    /**
+     * SQLite's defaults - nothing is changed
+     */
+    DEFAULT("default"),
+    /**
+     * Every commit is fsynced before returning
+     */
+    DURABLE("durable",
+            "journal_mode", "WAL",
+            "synchronous", "FULL"),
+    /**
+     * Large imports - a crash mid-import can lose or corrupt the import, so only use for reloadable data.
+     * page_size only takes effect on a newly created database file.
+     */
+    BULK_LOAD("bulk-load",
+              "page_size", "8192",
+              "journal_mode", "MEMORY",
+              "synchronous", "OFF",
+              "cache_size", "-262144",
+              "temp_store", "MEMORY"),
+    /**
+     * Mostly queries - large page cache and memory-mapped reads, commits survive application crashes
+     */
+    READ_MOSTLY("read-mostly",
+                "journal_mode", "WAL",
+                "synchronous", "NORMAL",
+                "cache_size", "-65536",
+                "mmap_size", "268435456",
+                "temp_store", "MEMORY");
+
+    private final String name;
+    private final Map<String, String> pragmas;
+
+    SqliteProfile(String name, String... pragmaPairs) {
+        this.name = name;
+        Map<String, String> ordered = new LinkedHashMap<>();
+        for (int i = 0; i < pragmaPairs.length; i += 2) {
+            ordered.put(pragmaPairs[i], pragmaPairs[i + 1]);
+        }
+        this.pragmas = Collections.unmodifiableMap(ordered);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the PRAGMA names and values in the order they must be applied
+     */
+    public Map<String, String> getPragmas() {
+        return pragmas;
+    }
+
+    /**
+     * @param name a profile name such as "bulk-load"
+     * @return the matching profile
+     * @throws IllegalArgumentException if no profile has that name
+     */
+    public static SqliteProfile fromName(String name) {
+        for (SqliteProfile profile : values()) {
+            if (profile.name.equalsIgnoreCase(name)) {
+                return profile;
+            }
+        }
+        throw new IllegalArgumentException("Unknown SQLite profile: " + name);
+    }
+}
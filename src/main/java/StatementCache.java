@@ -0,0 +1,105 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-connection cache of compiled statements keyed by their SQL text. Once the cache holds
+ * {@code capacity} statements, the least recently used statement is closed and evicted.
+ *
+ * Statements handed out by the cache are owned by the cache - callers must not close them, but
+ * should close any ResultSet they open.
+ */
+public class StatementCache {
+    private final Connection connection;
+    private final int capacity;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public StatementCache(Connection connection, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Statement cache capacity must be at least 1");
+        }
+        this.connection = connection;
+        this.capacity = capacity;
+        // access-order, so iteration starts at the least recently used statement
+        statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the compiled statement for the sql, preparing and caching it on a miss
+     * @param sql the statement text
+     * @return a statement owned by this cache
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public synchronized PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            hits++;
+            return statement;
+        }
+        misses++;
+        statement = connection.prepareStatement(sql);
+        statements.put(sql, statement);
+        if (statements.size() > capacity) {
+            evictEldest();
+        }
+        return statement;
+    }
+
+    private void evictEldest() throws SQLException {
+        Iterator<Map.Entry<String, PreparedStatement>> iterator = statements.entrySet().iterator();
+        PreparedStatement eldest = iterator.next().getValue();
+        iterator.remove();
+        evictions++;
+        eldest.close();
+    }
+
+    /**
+     * Closes and forgets every cached statement. Hit/miss counters are kept.
+     * @throws SQLException if a statement fails to close
+     */
+    public synchronized void invalidate() throws SQLException {
+        SQLException failure = null;
+        for (PreparedStatement statement : statements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        statements.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
@@ -0,0 +1,151 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Immutable map from String keys (e.g. subjects) to int counts, held as two sorted parallel arrays - the
+ * String-keyed counterpart of {@link IntCountMap}. Counts aren't boxed, and {@link #get(String)} is a binary
+ * search. A null key (e.g. courses without a subject) sorts first. Keys that aren't present count as 0.
+ */
+public final class StringCountMap {
+    public static final StringCountMap EMPTY = new StringCountMap(new String[0], new int[0]);
+
+    private static final Comparator<String> KEY_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(String key, int count);
+    }
+
+    private final String[] keys;
+    private final int[] counts;
+
+    private StringCountMap(String[] keys, int[] counts) {
+        this.keys = keys;
+        this.counts = counts;
+    }
+
+    /**
+     * @return the count for the key, or 0 if it isn't in the map
+     */
+    public int get(String key) {
+        int index = Arrays.binarySearch(keys, key, KEY_ORDER);
+        return index < 0 ? 0 : counts[index];
+    }
+
+    public boolean containsKey(String key) {
+        return Arrays.binarySearch(keys, key, KEY_ORDER) >= 0;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * @param index from 0 to size() - 1, in ascending key order
+     */
+    public String keyAt(int index) {
+        return keys[index];
+    }
+
+    public int countAt(int index) {
+        return counts[index];
+    }
+
+    /**
+     * @return the sum of every count
+     */
+    public long total() {
+        long total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Visits every entry in ascending key order
+     */
+    public void forEach(EntryVisitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            visitor.visit(keys[i], counts[i]);
+        }
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Collects entries in any order - SQLite's collation doesn't always agree with String.compareTo, so the
+     * entries are sorted here rather than trusting ORDER BY
+     */
+    static class Builder {
+        private String[] keys = new String[16];
+        private int[] counts = new int[16];
+        private int size;
+
+        Builder add(String key, int count) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            keys[size] = key;
+            counts[size] = count;
+            size++;
+            return this;
+        }
+
+        StringCountMap build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> KEY_ORDER.compare(keys[a], keys[b]));
+            String[] sortedKeys = new String[size];
+            int[] sortedCounts = new int[size];
+            for (int i = 0; i < size; i++) {
+                sortedKeys[i] = keys[order[i]];
+                sortedCounts[i] = counts[order[i]];
+                if (i > 0 && KEY_ORDER.compare(sortedKeys[i - 1], sortedKeys[i]) == 0) {
+                    throw new IllegalArgumentException("Duplicate key " + sortedKeys[i]);
+                }
+            }
+            return new StringCountMap(sortedKeys, sortedCounts);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StringCountMap other)) {
+            return false;
+        }
+        return Arrays.equals(keys, other.keys) && Arrays.equals(counts, other.counts);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(keys) + Arrays.hashCode(counts);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(keys[i]).append('=').append(counts[i]);
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,67 @@
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out student IDs from an in-process counter. The counter is seeded from the database once (and
+ * again after {@link #resync()}), so allocations don't query the database and concurrent callers never
+ * receive the same ID. The counter only moves forward - IDs from rolled back inserts are skipped, never reused.
+ */
+public class StudentIdAllocator {
+    /**
+     * Reads the first free ID from the database
+     */
+    @FunctionalInterface
+    public interface Seed {
+        int nextFreeId() throws SQLException;
+    }
+
+    private final Seed seed;
+    private final AtomicInteger next = new AtomicInteger(1);
+    private volatile boolean seeded;
+
+    public StudentIdAllocator(Seed seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return an ID no other call to this allocator has returned, and above every ID known to be in use
+     */
+    public int allocate() throws SQLException {
+        if (!seeded) {
+            seed();
+        }
+        return next.getAndIncrement();
+    }
+
+    private synchronized void seed() throws SQLException {
+        if (seeded) {
+            return;
+        }
+        int nextFreeId = seed.nextFreeId();
+        next.accumulateAndGet(nextFreeId, Math::max);
+        seeded = true;
+    }
+
+    /**
+     * Records an ID written to the database without being allocated here, e.g. an explicit insert
+     */
+    public void observe(int id) {
+        next.accumulateAndGet(id + 1, Math::max);
+    }
+
+    /**
+     * Re-reads the database on the next allocation, e.g. after a rollback. Never moves the counter backward,
+     * so IDs already handed out stay unique.
+     */
+    public void resync() {
+        seeded = false;
+    }
+
+    /**
+     * Starts over from the database's state, for when the table was emptied or replaced
+     */
+    public synchronized void reset() {
+        next.set(1);
+        seeded = false;
+    }
+}
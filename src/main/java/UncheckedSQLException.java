@@ -0,0 +1,17 @@
+import java.sql.SQLException;
+
+/**
+ * Wraps a {@link SQLException} thrown where a checked exception can't be, such as inside a Stream
+ */
+public class UncheckedSQLException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public UncheckedSQLException(SQLException cause) {
+        super(cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
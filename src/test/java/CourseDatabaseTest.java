@@ -1,8 +1,24 @@
 import org.junit.jupiter.api.*;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -37,6 +53,16 @@ class CourseDatabaseTest {
         assertTrue(students.contains(janeSmith));
     }
 
+    @Test
+    void streamStudents() throws SQLException {
+        courseDatabase.addNewStudent(janeSmith);
+        courseDatabase.addNewStudent(johnDoe);
+
+        try (Stream<Student> students = courseDatabase.streamStudents()) {
+            assertEquals(List.of(johnDoe, janeSmith), students.collect(Collectors.toList()));
+        }
+    }
+
     @Test
     void getNextStudentId_empty() throws SQLException {
         int nextId = courseDatabase.getNextStudentID();
@@ -53,6 +79,41 @@ class CourseDatabaseTest {
         assertEquals(3, nextId);
     }
 
+    @Test
+    void getNextStudentId_concurrentCallersNeverCollide() throws Exception {
+        courseDatabase.addNewStudent(johnDoe);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> allocations = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                allocations.add(executor.submit(() -> courseDatabase.getNextStudentID()));
+            }
+            Set<Integer> ids = new HashSet<>();
+            for (Future<Integer> allocation : allocations) {
+                ids.add(allocation.get());
+            }
+            assertEquals(1000, ids.size());
+            assertFalse(ids.contains(johnDoe.getId()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void getNextStudentId_afterRollback() throws SQLException {
+        // keep the fixture's tables when the student is rolled back
+        courseDatabase.commit();
+        int firstId = courseDatabase.getNextStudentID();
+        courseDatabase.addNewStudent(new Student(firstId, "Jim", "Beam", "mno4pqr"));
+        courseDatabase.rollback();
+
+        int secondId = courseDatabase.getNextStudentID();
+        courseDatabase.addNewStudent(new Student(secondId, "Jim", "Beam", "mno4pqr"));
+
+        assertTrue(secondId > firstId);
+        assertTrue(courseDatabase.getStudent(secondId).isPresent());
+    }
+
     @Test
     void addNewStudent() throws SQLException {
         courseDatabase.addNewStudent(johnDoe);
@@ -77,6 +138,73 @@ class CourseDatabaseTest {
         assertEquals(johnDoe, student);
     }
 
+    @Test
+    void statementCache_reusesCompiledStatements() throws SQLException {
+        courseDatabase.addNewStudent(johnDoe);
+        courseDatabase.getStudent(johnDoe.getId());
+        long hits = courseDatabase.getStatementCacheHits();
+        long misses = courseDatabase.getStatementCacheMisses();
+
+        courseDatabase.getStudent(johnDoe.getId());
+        courseDatabase.getStudent(janeSmith.getId());
+
+        assertEquals(hits + 2, courseDatabase.getStatementCacheHits());
+        assertEquals(misses, courseDatabase.getStatementCacheMisses());
+    }
+
+    @Test
+    void upsertStudents_chunked() throws SQLException {
+        List<Student> students = List.of(
+                new Student(1, "John", "Doe", "abc2def"),
+                new Student(2, "Jane", "Smith", "ghi3jkl"),
+                new Student(3, "Jim", "Beam", "mno4pqr"));
+
+        BatchResult<Student> result = courseDatabase.upsertStudents(students, 2);
+
+        assertEquals(3, result.getSucceeded());
+        assertFalse(result.hasConflicts());
+        assertEquals(students, courseDatabase.getStudents());
+    }
+
+    @Test
+    void addEnrollments_reportsConflictsWithoutAborting() throws SQLException {
+        courseDatabase.upsertStudents(List.of(johnDoe, janeSmith));
+        courseDatabase.upsertCourses(List.of(sde));
+
+        BatchResult<Enrollment> result = courseDatabase.addEnrollments(List.of(
+                Enrollment.of(johnDoe, sde),
+                Enrollment.of(johnDoe, sde),
+                Enrollment.of(janeSmith, sde)));
+
+        assertEquals(2, result.getSucceeded());
+        assertEquals(1, result.getConflicts().size());
+        assertEquals(1, result.getConflicts().get(0).index());
+        assertEquals(2, courseDatabase.getStudentsByCourse(sde).size());
+        assertEquals(2, courseDatabase.getStudents().size());
+    }
+
+    @Test
+    void addEnrollments_stagesChunksWrittenBeforeAFailure() throws SQLException {
+        Course seminar = new Course(23456, "CS", 4501, 1, "F 13:00-14:15", 5);
+        Student jimBeam = new Student(3, "Jim", "Beam", "mno4pqr");
+        courseDatabase.upsertStudents(List.of(johnDoe, janeSmith, jimBeam));
+        courseDatabase.addNewCourse(seminar);
+        courseDatabase.commit();
+        EnrollmentIndex index = courseDatabase.getEnrollmentIndex();
+        assertEquals(5, courseDatabase.getAvailableSeats(seminar));
+
+        // the null makes the binder throw in the second chunk
+        assertThrows(NullPointerException.class, () -> courseDatabase.addEnrollments(Arrays.asList(
+                Enrollment.of(johnDoe, seminar), Enrollment.of(janeSmith, seminar),
+                Enrollment.of(jimBeam, seminar), null), 2));
+        courseDatabase.commit();
+
+        assertEquals(List.of(johnDoe, janeSmith), courseDatabase.getStudentsByCourse(seminar));
+        assertArrayEquals(new int[] {johnDoe.getId(), janeSmith.getId()}, index.studentsOf(seminar.getCrn()));
+        assertEquals(3, courseDatabase.getAvailableSeats(seminar));
+    }
+
+    @Test
     void getStudentsByCourse() throws SQLException {
         courseDatabase.addNewStudent(johnDoe);
         courseDatabase.addNewStudent(janeSmith);
@@ -91,6 +219,740 @@ class CourseDatabaseTest {
         assertTrue(students.contains(janeSmith));
     }
 
+    @Test
+    void getStudentsByCourses() throws SQLException {
+        Course dsa = new Course(23456, "CS", 2100, 1, "MWF 10:00 - 10:50");
+        Course empty = new Course(34567, "CS", 1110, 1, "MWF 11:00 - 11:50");
+        courseDatabase.addNewStudent(johnDoe);
+        courseDatabase.addNewStudent(janeSmith);
+        courseDatabase.upsertCourses(List.of(sde, dsa, empty));
+        courseDatabase.addEnrollment(johnDoe, sde);
+        courseDatabase.addEnrollment(janeSmith, sde);
+        courseDatabase.addEnrollment(janeSmith, dsa);
+
+        Map<Integer, List<Student>> studentsByCrn = courseDatabase.getStudentsByCourses(List.of(sde, dsa, empty));
+
+        assertEquals(3, studentsByCrn.size());
+        assertEquals(List.of(johnDoe, janeSmith), studentsByCrn.get(sde.getCrn()));
+        assertEquals(List.of(janeSmith), studentsByCrn.get(dsa.getCrn()));
+        assertTrue(studentsByCrn.get(empty.getCrn()).isEmpty());
+    }
+
+    @Test
+    void loadSchedule_wiresBothDirections() throws SQLException {
+        Course dsa = new Course(23456, "CS", 2100, 1, "MWF 10:00 - 10:50");
+        Course calc = new Course(45678, "MATH", 1310, 1, "TR 9:30 - 10:45");
+        courseDatabase.addNewStudent(johnDoe);
+        courseDatabase.addNewStudent(janeSmith);
+        courseDatabase.upsertCourses(List.of(sde, dsa, calc));
+        courseDatabase.addEnrollment(johnDoe, sde);
+        courseDatabase.addEnrollment(janeSmith, sde);
+        courseDatabase.addEnrollment(janeSmith, calc);
+
+        Schedule schedule = courseDatabase.loadSchedule();
+        Student jane = schedule.getStudent(janeSmith.getId()).orElseThrow();
+        Course loadedSde = schedule.getCourse(sde.getCrn()).orElseThrow();
+
+        assertEquals(2, schedule.getStudents().size());
+        assertEquals(3, schedule.getCourses().size());
+        assertEquals(2, jane.getCourses().size());
+        assertTrue(loadedSde.getStudents().contains(jane));
+        assertSame(loadedSde, jane.getCourses().get(0));
+        assertTrue(schedule.getCourse(dsa.getCrn()).orElseThrow().getStudents().isEmpty());
+    }
+
+    @Test
+    void loadSchedule_bySubject() throws SQLException {
+        Course calc = new Course(45678, "MATH", 1310, 1, "TR 9:30 - 10:45");
+        courseDatabase.addNewStudent(johnDoe);
+        courseDatabase.addNewStudent(janeSmith);
+        courseDatabase.upsertCourses(List.of(sde, calc));
+        courseDatabase.addEnrollment(johnDoe, sde);
+        courseDatabase.addEnrollment(janeSmith, calc);
+
+        Schedule schedule = courseDatabase.loadSchedule("MATH");
+
+        assertEquals(1, schedule.getCourses().size());
+        assertEquals(1, schedule.getStudents().size());
+        assertTrue(schedule.getStudent(janeSmith.getId()).isPresent());
+        assertEquals(1, schedule.getStudent(janeSmith.getId()).orElseThrow().getCourses().size());
+    }
+
+    @Test
+    void pooledMode_readsCommittedDataInParallel() throws Exception {
+        Path databaseFile = Files.createTempFile("courses", ".db");
+        CourseDatabase pooledDatabase = new CourseDatabase(databaseFile.toString(),
+                CourseDatabaseConfig.builder().readPoolSize(2).build());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            pooledDatabase.connect();
+            pooledDatabase.createTablesIfNeeded();
+            pooledDatabase.commit();
+            pooledDatabase.addNewStudent(johnDoe);
+
+            // readers only see committed data
+            assertTrue(pooledDatabase.getStudent(johnDoe.getId()).isEmpty());
+            pooledDatabase.commit();
+
+            List<Future<Optional<Student>>> lookups = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                lookups.add(executor.submit(() -> pooledDatabase.getStudent(johnDoe.getId())));
+            }
+            for (Future<Optional<Student>> lookup : lookups) {
+                assertEquals(johnDoe, lookup.get().orElseThrow());
+            }
+
+            ReadConnectionPool.Stats stats = pooledDatabase.getReadPoolStats().orElseThrow();
+            assertEquals(2, stats.size());
+            assertEquals(0, stats.inUse());
+            assertEquals(21, stats.acquisitions());
+            pooledDatabase.disconnect();
+        } finally {
+            executor.shutdownNow();
+            Files.deleteIfExists(databaseFile);
+            Files.deleteIfExists(Path.of(databaseFile + "-wal"));
+            Files.deleteIfExists(Path.of(databaseFile + "-shm"));
+        }
+    }
+
+    @Test
+    void studentCache_readThroughAndInvalidation() throws SQLException {
+        CourseDatabase cachedDatabase = new CourseDatabase(":memory:",
+                CourseDatabaseConfig.builder().studentCacheSize(10).build());
+        cachedDatabase.connect();
+        cachedDatabase.createTablesIfNeeded();
+        // the test rolls back below, which would otherwise take the tables with it
+        cachedDatabase.commit();
+        Student jim = new Student(3, "Jim", "Beam", "mno4pqr");
+        cachedDatabase.addNewStudent(jim);
+
+        Student first = cachedDatabase.getStudent(3).orElseThrow();
+        first.setFirstName("Mutated");
+        Student second = cachedDatabase.getStudent(3).orElseThrow();
+
+        assertEquals("Jim", second.getFirstName());
+        assertNotSame(first, second);
+
+        jim.setFirstName("James");
+        cachedDatabase.upsertStudent(jim);
+        assertEquals("James", cachedDatabase.getStudent(3).orElseThrow().getFirstName());
+
+        cachedDatabase.rollback();
+        assertTrue(cachedDatabase.getStudent(3).isEmpty());
+
+        EntityCache.Stats stats = cachedDatabase.getStudentCacheStats().orElseThrow();
+        assertEquals(1, stats.hits());
+        assertEquals(3, stats.misses());
+        cachedDatabase.disconnect();
+    }
+
+    @Test
+    void useProfile_restoresPreviousSettings() throws SQLException {
+        String synchronous = courseDatabase.getPragma("synchronous");
+        String tempStore = courseDatabase.getPragma("temp_store");
+
+        CourseDatabase.ProfileScope bulkLoad = courseDatabase.useProfile(SqliteProfile.BULK_LOAD);
+        try {
+            assertEquals(SqliteProfile.BULK_LOAD, courseDatabase.getActiveProfile());
+            assertEquals("0", courseDatabase.getPragma("synchronous"));
+            assertEquals("2", courseDatabase.getPragma("temp_store"));
+            courseDatabase.addNewStudent(johnDoe);
+        } finally {
+            bulkLoad.close();
+        }
+
+        assertEquals(SqliteProfile.DEFAULT, courseDatabase.getActiveProfile());
+        assertEquals(synchronous, courseDatabase.getPragma("synchronous"));
+        assertEquals(tempStore, courseDatabase.getPragma("temp_store"));
+        assertTrue(courseDatabase.getStudent(johnDoe.getId()).isPresent());
+    }
+
+    @Test
+    void profile_fromName() {
+        assertEquals(SqliteProfile.READ_MOSTLY, SqliteProfile.fromName("read-mostly"));
+        assertThrows(IllegalArgumentException.class, () -> SqliteProfile.fromName("fastest"));
+    }
+
+    @Test
+    void explainQueryPlans_noUnexpectedFullScans() throws SQLException {
+        List<QueryPlan> plans = courseDatabase.explainQueryPlans();
+
+        assertFalse(plans.isEmpty());
+        for (QueryPlan plan : plans) {
+            assertFalse(plan.steps().isEmpty(), plan.name());
+            assertFalse(plan.hasUnexpectedFullScan(), () -> plan.name() + " scans: " + plan.fullScans());
+        }
+    }
+
+    @Test
+    void getStudentByComputingID() throws SQLException {
+        courseDatabase.addNewStudent(johnDoe);
+        courseDatabase.addNewStudent(janeSmith);
+
+        assertEquals(janeSmith, courseDatabase.getStudentByComputingID("ghi3jkl").orElseThrow());
+        assertTrue(courseDatabase.getStudentByComputingID("zzz9zzz").isEmpty());
+        assertEquals(List.of(janeSmith), courseDatabase.getStudentsByLastName("Smith"));
+    }
+
+    @Test
+    void asyncCourseDatabase_writesInOrderAndFailsOnlyTheBadOne() throws Exception {
+        courseDatabase.commit();
+        AsyncCourseDatabase async = new AsyncCourseDatabase(courseDatabase, 4, 16);
+        try {
+            CompletableFuture<Void> student = async.upsertStudent(johnDoe);
+            CompletableFuture<Void> course = async.upsertCourse(sde);
+            CompletableFuture<Void> enrollment = async.addEnrollment(johnDoe, sde);
+            CompletableFuture<Void> duplicate = async.addEnrollment(johnDoe, sde);
+
+            student.get();
+            course.get();
+            enrollment.get();
+            ExecutionException failure = assertThrows(ExecutionException.class, duplicate::get);
+            assertInstanceOf(SQLException.class, failure.getCause());
+            assertEquals(List.of(johnDoe), async.getStudentsByCourse(sde).get());
+        } finally {
+            async.close();
+        }
+    }
+
+    @Test
+    void asyncCourseDatabase_failsWritesAfterTheDatabaseIsDisconnected() throws Exception {
+        CourseDatabase closedDatabase = new CourseDatabase(":memory:");
+        closedDatabase.connect();
+        closedDatabase.disconnect();
+        AsyncCourseDatabase async = new AsyncCourseDatabase(closedDatabase, 1, 16);
+        try {
+            CompletableFuture<Void> write = async.upsertStudent(johnDoe);
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> write.get(10, TimeUnit.SECONDS));
+            assertEquals(1, failure.getCause().getSuppressed().length);
+        } finally {
+            async.close();
+        }
+    }
+
+    @Test
+    void enrollmentCommitter_failsOnlyTheConflictingEnrollment() throws Exception {
+        courseDatabase.addNewStudent(johnDoe);
+        courseDatabase.addNewStudent(janeSmith);
+        courseDatabase.addNewCourse(sde);
+        courseDatabase.commit();
+
+        EnrollmentCommitter committer = new EnrollmentCommitter(courseDatabase, Duration.ofMillis(200), 100, 100);
+        CompletableFuture<Void> john = committer.addEnrollment(johnDoe, sde);
+        CompletableFuture<Void> duplicate = committer.addEnrollment(johnDoe, sde);
+        CompletableFuture<Void> jane = committer.addEnrollment(janeSmith, sde);
+
+        john.get();
+        jane.get();
+        committer.close();
+        ExecutionException failure = assertThrows(ExecutionException.class, duplicate::get);
+        assertInstanceOf(SQLException.class, failure.getCause());
+        assertEquals(1, committer.getCommits());
+        assertEquals(2, committer.getCommittedEnrollments());
+        assertEquals(List.of(johnDoe, janeSmith), courseDatabase.getStudentsByCourse(sde));
+    }
+
+    @Test
+    void enrollmentCommitter_keepsRunningAfterTheDatabaseIsDisconnected() throws Exception {
+        CourseDatabase closedDatabase = new CourseDatabase(":memory:");
+        closedDatabase.connect();
+        closedDatabase.disconnect();
+        EnrollmentCommitter committer = new EnrollmentCommitter(closedDatabase, Duration.ofMillis(1), 8, 16);
+        try {
+            CompletableFuture<Void> first = committer.addEnrollment(johnDoe, sde);
+            assertThrows(ExecutionException.class, () -> first.get(10, TimeUnit.SECONDS));
+
+            CompletableFuture<Void> second = committer.addEnrollment(janeSmith, sde);
+            assertThrows(ExecutionException.class, () -> second.get(10, TimeUnit.SECONDS));
+        } finally {
+            committer.close();
+        }
+    }
+
+    @Test
+    void metrics_recordsOperationsAndSlowQueries() throws SQLException {
+        InMemoryMetrics metrics = new InMemoryMetrics(5);
+        CourseDatabase instrumentedDatabase = new CourseDatabase(":memory:", CourseDatabaseConfig.builder()
+                .metrics(metrics)
+                .slowQueryThreshold(Duration.ofNanos(1))
+                .build());
+        instrumentedDatabase.connect();
+        instrumentedDatabase.createTablesIfNeeded();
+        instrumentedDatabase.addNewStudent(johnDoe);
+        instrumentedDatabase.addNewStudent(janeSmith);
+        instrumentedDatabase.getStudents();
+        instrumentedDatabase.getStudent(johnDoe.getId());
+        assertThrows(SQLException.class, () -> instrumentedDatabase.addNewStudent(johnDoe));
+        instrumentedDatabase.disconnect();
+
+        InMemoryMetrics.OperationStats inserts = metrics.getOperationStats("addNewStudent");
+        assertEquals(3, inserts.count());
+        assertEquals(1, inserts.failures());
+        assertTrue(inserts.p99Nanos() <= inserts.maxNanos());
+        assertEquals(2, metrics.getOperationStats("getStudents").rows());
+        assertEquals(1, metrics.getOperationStats("getStudent").rows());
+        assertEquals(0, metrics.getOperationStats("getCourse").count());
+
+        CourseDatabaseMetrics.SlowQuery lookup = metrics.getSlowQueries().stream()
+                .filter(query -> query.operation().equals("getStudent"))
+                .findFirst().orElseThrow();
+        assertTrue(lookup.sql().contains("WHERE StudentID = ?"));
+        assertEquals(List.of(johnDoe.getId()), lookup.parameters());
+        assertEquals(5, metrics.getSlowQueries().size());
+    }
+
+    @Test
+    void enrollmentIndex_followsCommittedEnrollments() throws SQLException {
+        Course dsa = new Course(23456, "CS", 2100, 1, "MWF 10:00 - 10:50");
+        courseDatabase.addNewStudent(johnDoe);
+        courseDatabase.addNewStudent(janeSmith);
+        courseDatabase.addNewCourse(sde);
+        courseDatabase.addNewCourse(dsa);
+        courseDatabase.addEnrollment(johnDoe, sde);
+        courseDatabase.commit();
+
+        EnrollmentIndex index = courseDatabase.getEnrollmentIndex();
+        assertArrayEquals(new int[] {sde.getCrn()}, index.crnsOf(johnDoe.getId()));
+
+        courseDatabase.addEnrollment(johnDoe, dsa);
+        courseDatabase.addEnrollments(List.of(Enrollment.of(janeSmith, sde), Enrollment.of(johnDoe, sde)));
+        EnrollmentIndex.Snapshot beforeCommit = index.snapshot();
+        courseDatabase.commit();
+
+        assertEquals(1, beforeCommit.size());
+        assertArrayEquals(new int[] {sde.getCrn(), dsa.getCrn()}, index.crnsOf(johnDoe.getId()));
+        assertArrayEquals(new int[] {johnDoe.getId(), janeSmith.getId()}, index.studentsOf(sde.getCrn()));
+
+        assertTrue(courseDatabase.removeEnrollment(johnDoe, sde));
+        courseDatabase.rollback();
+        assertTrue(index.isEnrolled(johnDoe.getId(), sde.getCrn()));
+
+        assertTrue(courseDatabase.removeEnrollment(johnDoe, sde));
+        assertFalse(courseDatabase.removeEnrollment(johnDoe, sde));
+        courseDatabase.commit();
+        assertFalse(index.isEnrolled(johnDoe.getId(), sde.getCrn()));
+        assertEquals(1, index.snapshot().courseCount(johnDoe.getId()));
+        assertEquals(1, index.snapshot().enrollmentCount(sde.getCrn()));
+        assertEquals(2, index.snapshot().size());
+    }
+
+    @Test
+    void enrollmentIndex_rolledBackClearKeepsEnrollments() throws SQLException {
+        courseDatabase.addNewStudent(johnDoe);
+        courseDatabase.addNewCourse(sde);
+        courseDatabase.addEnrollment(johnDoe, sde);
+        courseDatabase.commit();
+        EnrollmentIndex index = courseDatabase.getEnrollmentIndex();
+
+        courseDatabase.clearTables();
+        // not committed yet, so readers still see the enrollment
+        assertTrue(index.isEnrolled(johnDoe.getId(), sde.getCrn()));
+        courseDatabase.rollback();
+        assertTrue(index.isEnrolled(johnDoe.getId(), sde.getCrn()));
+
+        courseDatabase.clearTables();
+        courseDatabase.commit();
+        assertFalse(index.isEnrolled(johnDoe.getId(), sde.getCrn()));
+        assertEquals(0, index.snapshot().size());
+    }
+
+    @Test
+    void enrollmentIndex_pooledLoadKeepsUncommittedEnrollments() throws Exception {
+        Path databaseFile = Files.createTempFile("courses", ".db");
+        CourseDatabase pooledDatabase = new CourseDatabase(databaseFile.toString(),
+                CourseDatabaseConfig.builder().readPoolSize(1).build());
+        try {
+            pooledDatabase.connect();
+            pooledDatabase.createTablesIfNeeded();
+            pooledDatabase.addNewStudent(johnDoe);
+            pooledDatabase.addNewCourse(sde);
+            pooledDatabase.addEnrollment(johnDoe, sde);
+
+            // loaded while the enrollment is still uncommitted
+            EnrollmentIndex index = pooledDatabase.getEnrollmentIndex();
+            pooledDatabase.commit();
+
+            assertTrue(index.isEnrolled(johnDoe.getId(), sde.getCrn()));
+            pooledDatabase.disconnect();
+        } finally {
+            Files.deleteIfExists(databaseFile);
+            Files.deleteIfExists(Path.of(databaseFile + "-wal"));
+            Files.deleteIfExists(Path.of(databaseFile + "-shm"));
+        }
+    }
+
+    @Test
+    void addEnrollmentCheckingConflicts_rejectsOverlappingCourse() throws SQLException {
+        Course overlapping = new Course(23456, "STS", 4500, 1, "TR 15:00-16:15");
+        Course afterwards = new Course(34567, "CS", 4414, 1, "TR 15:30 - 16:45");
+        courseDatabase.addNewStudent(johnDoe);
+        courseDatabase.addNewCourse(sde);
+        courseDatabase.addNewCourse(overlapping);
+        courseDatabase.addNewCourse(afterwards);
+        courseDatabase.addEnrollmentCheckingConflicts(johnDoe, sde);
+
+        // the first enrollment isn't committed yet, but still counts
+        ScheduleConflictException conflict = assertThrows(ScheduleConflictException.class,
+                () -> courseDatabase.addEnrollmentCheckingConflicts(johnDoe, overlapping));
+        assertEquals(sde.getCrn(), conflict.getConflictingCrn());
+
+        courseDatabase.addEnrollmentCheckingConflicts(johnDoe, afterwards);
+        courseDatabase.commit();
+        assertArrayEquals(new int[] {sde.getCrn(), afterwards.getCrn()},
+                          courseDatabase.getEnrollmentIndex().crnsOf(johnDoe.getId()));
+    }
+
+    @Test
+    void addEnrollmentCheckingConflicts_stillSeesEnrollmentsAfterARolledBackClear() throws SQLException {
+        Course overlapping = new Course(23456, "STS", 4500, 1, "TR 15:00-16:15");
+        courseDatabase.addNewStudent(johnDoe);
+        courseDatabase.addNewCourse(sde);
+        courseDatabase.addNewCourse(overlapping);
+        courseDatabase.addEnrollmentCheckingConflicts(johnDoe, sde);
+        courseDatabase.commit();
+
+        courseDatabase.clearTables();
+        courseDatabase.rollback();
+
+        ScheduleConflictException conflict = assertThrows(ScheduleConflictException.class,
+                () -> courseDatabase.addEnrollmentCheckingConflicts(johnDoe, overlapping));
+        assertEquals(sde.getCrn(), conflict.getConflictingCrn());
+    }
+
+    @Test
+    void addEnrollmentCheckingConflicts_treatsUnparseableTimesAsUnscheduled() throws SQLException {
+        Course online = new Course(23456, "STS", 4500, 1, "Online");
+        Course informal = new Course(34567, "CS", 4414, 1, "TR 2pm");
+        courseDatabase.addNewStudent(johnDoe);
+        courseDatabase.addNewCourse(sde);
+        courseDatabase.addNewCourse(online);
+        courseDatabase.addNewCourse(informal);
+
+        courseDatabase.addEnrollmentCheckingConflicts(johnDoe, sde);
+        courseDatabase.addEnrollmentCheckingConflicts(johnDoe, online);
+        courseDatabase.addEnrollmentCheckingConflicts(johnDoe, informal);
+
+        assertEquals(3, courseDatabase.getCoursesByStudent(johnDoe).size());
+    }
+
+    @Test
+    void enrollOrWaitlist_enforcesCapacityAndPromotesFromWaitlist() throws SQLException {
+        Course seminar = new Course(23456, "CS", 4501, 1, "F 13:00-14:15", 1);
+        courseDatabase.addNewStudent(johnDoe);
+        courseDatabase.addNewStudent(janeSmith);
+        courseDatabase.addNewCourse(seminar);
+        courseDatabase.addNewCourse(sde);
+
+        assertEquals(EnrollmentStatus.ENROLLED, courseDatabase.enrollOrWaitlist(johnDoe, seminar));
+        assertEquals(EnrollmentStatus.WAITLISTED, courseDatabase.enrollOrWaitlist(janeSmith, seminar));
+        assertThrows(SQLException.class, () -> courseDatabase.enrollOrWaitlist(johnDoe, seminar));
+        assertEquals(0, courseDatabase.getAvailableSeats(seminar));
+        courseDatabase.commit();
+        assertEquals(seminar, courseDatabase.getCourse(seminar.getCrn()).orElseThrow());
+        assertEquals(List.of(janeSmith), courseDatabase.getWaitlist(seminar));
+
+        courseDatabase.removeEnrollment(johnDoe, seminar);
+        assertEquals(List.of(janeSmith), courseDatabase.getStudentsByCourse(seminar));
+        assertTrue(courseDatabase.getWaitlist(seminar).isEmpty());
+
+        courseDatabase.rollback();
+        assertEquals(List.of(johnDoe), courseDatabase.getStudentsByCourse(seminar));
+        assertEquals(0, courseDatabase.getAvailableSeats(seminar));
+
+        courseDatabase.setCourseCapacity(seminar, 2);
+        assertEquals(List.of(johnDoe, janeSmith), courseDatabase.getStudentsByCourse(seminar));
+        assertEquals(Course.UNLIMITED, courseDatabase.getAvailableSeats(sde));
+        assertThrows(IllegalArgumentException.class, () -> courseDatabase.setCourseCapacity(seminar, -5));
+        assertThrows(IllegalArgumentException.class, () -> new Course(34567, "CS", 4501, 2, "TBA", -2));
+    }
+
+    @Test
+    void enrollOrWaitlist_concurrentRegistrationsNeverOverfill() throws Exception {
+        Course seminar = new Course(23456, "CS", 4501, 1, "F 13:00-14:15", 5);
+        courseDatabase.addNewCourse(seminar);
+        List<Student> students = new ArrayList<>();
+        for (int id = 1; id <= 40; id++) {
+            Student student = new Student(id, "Student", "Number" + id, "st" + id);
+            courseDatabase.addNewStudent(student);
+            students.add(student);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<EnrollmentStatus>> registrations = new ArrayList<>();
+            for (Student student : students) {
+                registrations.add(executor.submit(() -> courseDatabase.enrollOrWaitlist(student, seminar)));
+            }
+            int enrolled = 0;
+            for (Future<EnrollmentStatus> registration : registrations) {
+                if (registration.get() == EnrollmentStatus.ENROLLED) {
+                    enrolled++;
+                }
+            }
+            assertEquals(5, enrolled);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(5, courseDatabase.getStudentsByCourse(seminar).size());
+        assertEquals(35, courseDatabase.getWaitlist(seminar).size());
+        assertEquals(0, courseDatabase.getAvailableSeats(seminar));
+    }
+
+    @Test
+    void changesSince_streamsAndCompactsTheFeed() throws SQLException {
+        CourseDatabase feedDatabase = new CourseDatabase(":memory:",
+                CourseDatabaseConfig.builder().changeFeed(true).build());
+        feedDatabase.connect();
+        feedDatabase.createTablesIfNeeded();
+        feedDatabase.addNewStudent(johnDoe);
+        feedDatabase.upsertStudent(new Student(johnDoe.getId(), "Johnny", "Doe", "abc2def"));
+        feedDatabase.addNewCourse(sde);
+        feedDatabase.addEnrollment(johnDoe, sde);
+        feedDatabase.removeEnrollment(johnDoe, sde);
+
+        try (Stream<Change> changes = feedDatabase.changesSince(0)) {
+            assertEquals(List.of(
+                    new Change(1, Change.Table.STUDENTS, Change.Operation.INSERT, 1, 0),
+                    new Change(2, Change.Table.STUDENTS, Change.Operation.UPDATE, 1, 0),
+                    new Change(3, Change.Table.COURSES, Change.Operation.INSERT, 0, 12345),
+                    new Change(4, Change.Table.ENROLLMENTS, Change.Operation.INSERT, 1, 12345),
+                    new Change(5, Change.Table.ENROLLMENTS, Change.Operation.DELETE, 1, 12345)),
+                    changes.collect(Collectors.toList()));
+        }
+        try (Stream<Change> changes = feedDatabase.changesSince(3)) {
+            assertEquals(2, changes.count());
+        }
+
+        // superseded: the student's insert and the enrollment's insert
+        assertEquals(2, feedDatabase.compactChangeLog(0));
+        assertEquals(1, feedDatabase.compactChangeLog(5));
+        try (Stream<Change> changes = feedDatabase.changesSince(0)) {
+            assertEquals(List.of(2L, 3L), changes.map(Change::sequence).collect(Collectors.toList()));
+        }
+        assertEquals(3, feedDatabase.getLatestChangeSequence());
+        feedDatabase.disconnect();
+
+        assertThrows(IllegalStateException.class, () -> courseDatabase.changesSince(0));
+    }
+
+    @Test
+    void snapshotManager_servesReadsFromACopy() throws Exception {
+        Path databaseFile = Files.createTempFile("courses", ".db");
+        Path snapshotDirectory = Files.createTempDirectory("snapshots");
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        CourseDatabase liveDatabase = new CourseDatabase(databaseFile.toString());
+        try (SnapshotManager snapshots = new SnapshotManager(databaseFile.toString(), snapshotDirectory, 1, metrics)) {
+            liveDatabase.connect();
+            liveDatabase.createTablesIfNeeded();
+            liveDatabase.addNewStudent(johnDoe);
+            liveDatabase.commit();
+            assertThrows(IllegalStateException.class, snapshots::openLatest);
+
+            SnapshotManager.Snapshot first = snapshots.refresh();
+            assertEquals(1, first.generation());
+            assertTrue(first.pageCount() > 0);
+            liveDatabase.addNewStudent(janeSmith);
+            liveDatabase.commit();
+
+            CourseDatabaseConfig.Builder snapshotConfig = CourseDatabaseConfig.builder().studentCacheSize(10);
+            CourseDatabase snapshotDatabase = snapshots.openLatest(snapshotConfig);
+            assertFalse(snapshotConfig.build().isReadOnly());
+            assertEquals(List.of(johnDoe), snapshotDatabase.getStudents());
+            assertThrows(SQLException.class, () -> snapshotDatabase.addNewStudent(janeSmith));
+            snapshotDatabase.disconnect();
+
+            snapshots.refresh();
+            snapshots.refresh();
+            assertEquals(3, snapshots.getSnapshotsTaken());
+            assertFalse(Files.exists(first.file()));
+            CourseDatabase refreshedDatabase = snapshots.openLatest();
+            assertEquals(2, refreshedDatabase.getStudents().size());
+            refreshedDatabase.disconnect();
+
+            assertTrue(snapshots.getSnapshotAge().compareTo(Duration.ofMinutes(1)) < 0);
+            assertEquals(3, metrics.getOperationStats().get("snapshotCopy").count());
+            liveDatabase.disconnect();
+        } finally {
+            try (Stream<Path> files = Files.list(snapshotDirectory)) {
+                for (Path file : files.collect(Collectors.toList())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(snapshotDirectory);
+            Files.deleteIfExists(databaseFile);
+        }
+    }
+
+    @Test
+    void snapshotManager_keepsRefreshingAfterARuntimeFailure() throws Exception {
+        Path databaseFile = Files.createTempFile("courses", ".db");
+        Path snapshotDirectory = Files.createTempDirectory("snapshots");
+        RuntimeException sinkFailure = new IllegalStateException("metrics sink is down");
+        CourseDatabaseMetrics failsOnce = new CourseDatabaseMetrics() {
+            private boolean failed;
+
+            @Override
+            public synchronized void recordOperation(String operation, long elapsedNanos, long rows, boolean failed) {
+                if (!this.failed) {
+                    this.failed = true;
+                    throw sinkFailure;
+                }
+            }
+
+            @Override
+            public void recordSlowQuery(SlowQuery slowQuery) {
+            }
+        };
+        try (SnapshotManager snapshots = new SnapshotManager(databaseFile.toString(), snapshotDirectory, -1,
+                                                             failsOnce)) {
+            snapshots.start(Duration.ofMillis(10));
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (snapshots.getSnapshotsTaken() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertTrue(snapshots.getSnapshotsTaken() > 0);
+            assertEquals(1, snapshots.getFailures());
+            assertSame(sinkFailure, snapshots.getLastFailure());
+        } finally {
+            try (Stream<Path> files = Files.list(snapshotDirectory)) {
+                for (Path file : files.collect(Collectors.toList())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(snapshotDirectory);
+            Files.deleteIfExists(databaseFile);
+        }
+    }
+
+    @Test
+    void shardedDatabase_routesCoursesAndMergesReads() throws SQLException {
+        Course calculus = new Course(23456, "MATH", 1310, 1, "MWF 10:00-10:50");
+        ShardedCourseDatabase sharded = new ShardedCourseDatabase(List.of(":memory:", ":memory:"),
+                (course, shardCount) -> course.getSubject().equals("CS") ? 0 : 1);
+        sharded.connect();
+        sharded.createTablesIfNeeded();
+        sharded.addNewStudent(johnDoe);
+        // the third course reuses sde's subject, number and section under another CRN
+        Course duplicate = new Course(34567, "CS", 3140, 1, "MWF 9:00-9:50");
+        BatchResult<Course> upserted = sharded.upsertCourses(List.of(sde, calculus, duplicate));
+        assertEquals(2, upserted.getSucceeded());
+        assertEquals(1, upserted.getConflicts().size());
+        assertEquals(2, upserted.getConflicts().get(0).index());
+        sharded.addEnrollment(johnDoe, sde);
+        sharded.addEnrollment(johnDoe, calculus);
+
+        assertEquals(1, sharded.shardOf(calculus));
+        assertEquals(List.of(sde, calculus), sharded.getCoursesByStudent(johnDoe));
+        assertEquals(List.of(johnDoe), sharded.getStudentsByCourse(calculus));
+        assertEquals(calculus, sharded.getCourse(calculus.getCrn()).orElseThrow());
+        assertEquals(johnDoe, sharded.getStudent(johnDoe.getId()).orElseThrow());
+        assertThrows(SQLException.class, () -> sharded.addNewCourse(calculus));
+
+        assertTrue(sharded.removeEnrollment(johnDoe, sde));
+        assertEquals(List.of(calculus), sharded.getCoursesByStudent(johnDoe));
+        sharded.disconnect();
+    }
+
+    @Test
+    void getStudents_pagesByStudentId() throws SQLException {
+        Student alexLee = new Student(3, "Alex", "Lee", "mno4pqr");
+        courseDatabase.addNewStudent(alexLee);
+        courseDatabase.addNewStudent(johnDoe);
+        courseDatabase.addNewStudent(janeSmith);
+        courseDatabase.addNewCourse(sde);
+        courseDatabase.addEnrollment(alexLee, sde);
+        courseDatabase.addEnrollment(johnDoe, sde);
+
+        assertEquals(List.of(johnDoe, janeSmith), courseDatabase.getStudents(0, 2));
+        assertEquals(List.of(alexLee), courseDatabase.getStudents(janeSmith.getId(), 2));
+        assertTrue(courseDatabase.getStudents(alexLee.getId(), 2).isEmpty());
+
+        assertEquals(List.of(johnDoe), courseDatabase.getStudentsByCourse(sde, 0, 1));
+        assertEquals(List.of(alexLee), courseDatabase.getStudentsByCourse(sde, johnDoe.getId(), 1));
+        assertThrows(IllegalArgumentException.class, () -> courseDatabase.getStudents(0, 0));
+    }
+
+    @Test
+    void searchStudents_matchesNamePrefixes() throws SQLException {
+        Student johannaDoering = new Student(3, "Johanna", "Doering", "xyz9abc");
+        courseDatabase.addNewStudent(johnDoe);
+        courseDatabase.addNewStudent(janeSmith);
+        courseDatabase.addNewStudent(johannaDoering);
+
+        assertEquals(List.of(johnDoe, johannaDoering), courseDatabase.searchStudents("jo", 10));
+        assertEquals(List.of(johnDoe), courseDatabase.searchStudents("jo do", 1));
+        assertEquals(List.of(johnDoe), courseDatabase.searchStudents("ABC2", 10));
+        assertTrue(courseDatabase.searchStudents("\"*) OR (", 10).isEmpty());
+
+        courseDatabase.upsertStudent(new Student(janeSmith.getId(), "Janet", "Smithers", "ghi3jkl"));
+        assertEquals(1, courseDatabase.searchStudents("smithers", 10).size());
+        assertEquals(1, courseDatabase.searchStudents("jane smith", 10).size());
+        courseDatabase.clearTables();
+        assertTrue(courseDatabase.searchStudents("jo", 10).isEmpty());
+    }
+
+    @Test
+    void enrollmentCounts_groupInTheDatabase() throws SQLException {
+        Course calculus = new Course(23456, "MATH", 1310, 1, "TR 14:00 - 15:15");
+        CourseDatabase summaryDatabase = new CourseDatabase(":memory:",
+                CourseDatabaseConfig.builder().enrollmentSummary(true).build());
+        summaryDatabase.connect();
+        for (CourseDatabase database : List.of(courseDatabase, summaryDatabase)) {
+            database.createTablesIfNeeded();
+            database.addNewStudent(johnDoe);
+            database.addNewStudent(janeSmith);
+            database.addNewCourse(sde);
+            database.addNewCourse(calculus);
+            database.addEnrollment(johnDoe, sde);
+            database.addEnrollment(janeSmith, sde);
+            database.addEnrollment(janeSmith, calculus);
+            database.removeEnrollment(janeSmith, calculus);
+
+            IntCountMap byCrn = database.enrollmentCountsByCrn();
+            assertEquals(2, byCrn.get(sde.getCrn()));
+            assertEquals(0, byCrn.get(calculus.getCrn()));
+            assertEquals(1, byCrn.size());
+            StringCountMap bySubject = database.enrollmentCountsBySubject();
+            assertEquals(2, bySubject.get("CS"));
+            assertEquals(0, bySubject.get("MATH"));
+            assertEquals(1, bySubject.size());
+
+            database.addEnrollment(johnDoe, calculus);
+            assertEquals(StringCountMap.builder().add("TR 14:00 - 15:15", 3).build(),
+                         database.enrollmentCountsByMeetingTime());
+        }
+        summaryDatabase.clearTables();
+        assertTrue(summaryDatabase.enrollmentCountsByCrn().isEmpty());
+        summaryDatabase.disconnect();
+    }
+
+    @Test
+    void shardedDatabase_readsFromThePools() throws Exception {
+        Path first = Files.createTempFile("shard", ".db");
+        Path second = Files.createTempFile("shard", ".db");
+        Course calculus = new Course(23456, "MATH", 1310, 1, "MWF 10:00-10:50");
+        ShardedCourseDatabase sharded = new ShardedCourseDatabase(List.of(first.toString(), second.toString()),
+                ShardedCourseDatabase.ShardKey.bySubject(), CourseDatabaseConfig.builder().readPoolSize(1).build());
+        try {
+            sharded.connect();
+            sharded.createTablesIfNeeded();
+            sharded.addNewStudent(johnDoe);
+            sharded.upsertCourses(List.of(sde, calculus));
+            sharded.addEnrollment(johnDoe, sde);
+            sharded.addEnrollment(johnDoe, calculus);
+
+            assertEquals(List.of(sde, calculus), sharded.getCoursesByStudent(johnDoe));
+            assertEquals(List.of(johnDoe), sharded.getStudents(0, 10));
+            sharded.disconnect();
+        } finally {
+            for (Path shard : List.of(first, second)) {
+                Files.deleteIfExists(shard);
+                Files.deleteIfExists(Path.of(shard + "-wal"));
+                Files.deleteIfExists(Path.of(shard + "-shm"));
+            }
+        }
+    }
+
     @AfterEach
     void tearDown() throws SQLException {
         courseDatabase.dropTables();
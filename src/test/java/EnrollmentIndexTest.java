@@ -0,0 +1,37 @@
+import org.junit.jupiter.api.*;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EnrollmentIndexTest {
+    @Test
+    void commit_compactsLargeOverlayWithoutLosingEnrollments() {
+        EnrollmentIndex index = EnrollmentIndex.empty();
+        for (int studentId = 1; studentId <= 3000; studentId++) {
+            index.stageAdd(studentId, 100 + studentId % 3);
+        }
+        index.commit();
+        index.stageRemove(3, 100);
+        index.stageAdd(3, 101);
+        index.commit();
+
+        EnrollmentIndex.Snapshot snapshot = index.snapshot();
+        assertEquals(3000, snapshot.size());
+        assertEquals(999, snapshot.enrollmentCount(100));
+        assertEquals(1001, snapshot.enrollmentCount(101));
+        assertArrayEquals(new int[] {101}, snapshot.crnsOf(3));
+        assertArrayEquals(new int[] {1, 3, 4, 7}, Arrays.copyOf(snapshot.studentsOf(101), 4));
+    }
+
+    @Test
+    void rollback_dropsStagedChanges() {
+        EnrollmentIndex index = EnrollmentIndex.empty();
+        index.stageAdd(1, 100);
+        index.rollback();
+        index.commit();
+
+        assertFalse(index.isEnrolled(1, 100));
+        assertArrayEquals(new int[0], index.studentsOf(100));
+    }
+}
@@ -0,0 +1,33 @@
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntCountMapTest {
+    @Test
+    void get_returnsZeroForMissingKeys() {
+        IntCountMap counts = IntCountMap.builder().add(-5, 1).add(3, 2).add(40, 7).build();
+
+        assertEquals(1, counts.get(-5));
+        assertEquals(7, counts.get(40));
+        assertEquals(0, counts.get(4));
+        assertFalse(counts.containsKey(4));
+        assertEquals(3, counts.size());
+        assertEquals(10, counts.total());
+        assertEquals("{-5=1, 3=2, 40=7}", counts.toString());
+    }
+
+    @Test
+    void builder_growsAndRejectsUnsortedKeys() {
+        IntCountMap.Builder builder = IntCountMap.builder();
+        for (int crn = 0; crn < 100; crn++) {
+            builder.add(crn, crn % 3);
+        }
+        IntCountMap counts = builder.build();
+
+        assertEquals(100, counts.size());
+        assertEquals(99, counts.keyAt(99));
+        assertEquals(0, counts.countAt(99));
+        assertThrows(IllegalArgumentException.class, () -> IntCountMap.builder().add(2, 1).add(2, 1));
+        assertSame(IntCountMap.EMPTY, IntCountMap.builder().build());
+    }
+}
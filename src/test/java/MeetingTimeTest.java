@@ -0,0 +1,30 @@
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeetingTimeTest {
+    @Test
+    void parse_acceptsSpacedAndUnspacedRanges() {
+        MeetingTime expected = new MeetingTime(List.of(new MeetingTime.Slot(0b01010, 14 * 60, 15 * 60 + 15)));
+
+        assertEquals(expected, MeetingTime.parse("TR 14:00-15:15"));
+        assertEquals(expected, MeetingTime.parse("TR 14:00 - 15:15"));
+        assertEquals(MeetingTime.NONE, MeetingTime.parse("TBA"));
+        assertThrows(IllegalArgumentException.class, () -> MeetingTime.parse("Tuesdays at two"));
+        assertThrows(IllegalArgumentException.class, () -> MeetingTime.parse("MW 10:00 - 9:00"));
+    }
+
+    @Test
+    void overlaps() {
+        MeetingTime mwfMorning = MeetingTime.parse("MWF 10:00 - 10:50");
+
+        assertTrue(mwfMorning.overlaps(MeetingTime.parse("W 10:30-11:45")));
+        assertFalse(mwfMorning.overlaps(MeetingTime.parse("TR 10:00 - 10:50")));
+        // back to back
+        assertFalse(mwfMorning.overlaps(MeetingTime.parse("MWF 10:50 - 11:40")));
+        assertTrue(mwfMorning.overlaps(MeetingTime.parse("TR 9:00-9:50; F 9:30-10:20")));
+        assertFalse(mwfMorning.overlaps(MeetingTime.NONE));
+    }
+}
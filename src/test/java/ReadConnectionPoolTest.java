@@ -0,0 +1,72 @@
+import org.junit.jupiter.api.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadConnectionPoolTest {
+    static Path databaseFile;
+
+    @BeforeAll
+    static void initialize() throws Exception {
+        databaseFile = Files.createTempFile("pool", ".db");
+    }
+
+    @Test
+    void acquire_timesOutWhenExhausted() throws SQLException {
+        try (ReadConnectionPool pool = ReadConnectionPool.open("jdbc:sqlite:" + databaseFile, 1, 4,
+                                                               Duration.ofMillis(50))) {
+            try (ReadConnectionPool.PooledConnection reader = pool.acquire()) {
+                assertFalse(reader.connection().isClosed());
+                assertEquals(1, pool.getStats().inUse());
+                assertThrows(SQLTimeoutException.class, pool::acquire);
+            }
+
+            ReadConnectionPool.Stats stats = pool.getStats();
+            assertEquals(0, stats.inUse());
+            assertEquals(1, stats.peakInUse());
+            assertEquals(1, stats.acquisitions());
+            assertEquals(1, stats.timeouts());
+        }
+    }
+
+    @Test
+    void release_makesConnectionAvailableAgain() throws SQLException {
+        try (ReadConnectionPool pool = ReadConnectionPool.open("jdbc:sqlite:" + databaseFile, 1, 4,
+                                                               Duration.ofMillis(50))) {
+            pool.acquire().close();
+            pool.acquire().close();
+
+            assertEquals(2, pool.getStats().acquisitions());
+            assertEquals(0, pool.getStats().timeouts());
+        }
+    }
+
+    @Test
+    void close_isIdempotent() throws SQLException {
+        try (ReadConnectionPool pool = ReadConnectionPool.open("jdbc:sqlite:" + databaseFile, 1, 4,
+                                                               Duration.ofMillis(50))) {
+            ReadConnectionPool.PooledConnection first = pool.acquire();
+            first.close();
+            ReadConnectionPool.PooledConnection second = pool.acquire();
+            first.close();
+
+            assertEquals(1, pool.getStats().inUse());
+            assertThrows(SQLTimeoutException.class, pool::acquire);
+            assertThrows(SQLException.class, first::connection);
+            assertThrows(SQLException.class, first::statements);
+            assertFalse(second.connection().isClosed());
+            second.close();
+            assertEquals(0, pool.getStats().inUse());
+        }
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        Files.deleteIfExists(databaseFile);
+    }
+}
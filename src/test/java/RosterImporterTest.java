@@ -0,0 +1,102 @@
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RosterImporterTest {
+    static CourseDatabase courseDatabase;
+
+    @BeforeAll
+    static void initialize() {
+        courseDatabase = new CourseDatabase(":memory:");
+    }
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        courseDatabase.connect();
+        courseDatabase.createTablesIfNeeded();
+    }
+
+    @Test
+    void importRoster_csv() throws IOException, SQLException {
+        String roster = """
+                StudentId,FirstName,LastName,ComputingID,Crn,Subject,CourseNumber,Section,MeetingTime
+                1,John,Doe,abc2def,12345,CS,3140,1,TR 14:00-15:15
+                2,Jane,Smith,ghi3jkl,12345,CS,3140,1,TR 14:00-15:15
+                2,Jane,Smith,ghi3jkl,23456,CS,2100,1,"MWF 10:00-10:50"
+                2,Jane,Smith,ghi3jkl,23456,CS,2100,1,MWF 10:00-10:50
+                x,Bad,Row,bad1row,12345,CS,3140,1,TR 14:00-15:15
+                3,Jim,Beam,abc2def,12345,CS,3140,1,TR 14:00-15:15
+                """;
+        List<RosterImporter.Progress> progress = new ArrayList<>();
+
+        RosterImporter.Report report = new RosterImporter(courseDatabase)
+                .batchSize(2)
+                .onProgress(2, progress::add)
+                .importRoster(new StringReader(roster), RosterImporter.Format.CSV);
+
+        assertEquals(6, report.rowsRead());
+        assertEquals(3, report.rowsImported());
+        assertEquals(3, report.rowsRejected());
+        assertEquals(List.of(5L, 6L, 7L),
+                     report.rejections().stream().map(RosterImporter.Rejection::lineNumber).sorted().toList());
+        assertEquals(2, courseDatabase.getStudents().size());
+        assertEquals(2, courseDatabase.loadSchedule().getStudent(2).orElseThrow().getCourses().size());
+        assertFalse(progress.isEmpty());
+        assertEquals(6, progress.get(progress.size() - 1).rowsRead());
+    }
+
+    @Test
+    void importRoster_ndjson() throws IOException, SQLException {
+        String roster = """
+                {"StudentId": 1, "FirstName": "John", "LastName": "Doe", "ComputingID": "abc2def", "Crn": 12345, "Subject": "CS", "CourseNumber": 3140, "Section": 1, "MeetingTime": "TR 14:00-15:15"}
+                {"StudentId": 2, "FirstName": null, "LastName": "Smith", "ComputingID": "ghi3jkl", "Crn": 12345, "Subject": "CS", "CourseNumber": 3140, "Section": 1, "MeetingTime": "TR 14:00-15:15"}
+                {"StudentId": 3, "LastName": "Beam"
+                """;
+
+        RosterImporter.Report report = new RosterImporter(courseDatabase)
+                .importRoster(new StringReader(roster), RosterImporter.Format.NDJSON);
+
+        assertEquals(2, report.rowsImported());
+        assertEquals(1, report.rowsRejected());
+        assertEquals(3, report.rejections().get(0).lineNumber());
+        assertNull(courseDatabase.getStudent(2).orElseThrow().getFirstName());
+    }
+
+    @Test
+    void importRoster_missingHeaderColumn() {
+        String roster = """
+                StudentId,FirstName,LastName
+                1,John,Doe
+                """;
+
+        assertThrows(IOException.class, () -> new RosterImporter(courseDatabase)
+                .importRoster(new StringReader(roster), RosterImporter.Format.CSV));
+    }
+
+    @Test
+    void importRoster_malformedHeaderFailsInsteadOfHanging() {
+        String roster = """
+                "StudentId,FirstName
+                1,John,Doe
+                """;
+
+        RosterImporter importer = new RosterImporter(courseDatabase);
+        IOException failure = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(IOException.class,
+                () -> importer.importRoster(new StringReader(roster), RosterImporter.Format.CSV)));
+        assertInstanceOf(IllegalArgumentException.class, failure.getCause());
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        courseDatabase.dropTables();
+        courseDatabase.commit();
+        courseDatabase.disconnect();
+    }
+}
@@ -0,0 +1,75 @@
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScheduleExporterTest {
+    static CourseDatabase courseDatabase;
+
+    @BeforeAll
+    static void initialize() {
+        courseDatabase = new CourseDatabase(":memory:");
+    }
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        courseDatabase.connect();
+        courseDatabase.createTablesIfNeeded();
+        courseDatabase.upsertStudents(List.of(
+                new Student(1, "John", "Doe", "abc2def"),
+                new Student(2, null, "O\"Brien, Jr.", "ghi3jkl")));
+        courseDatabase.upsertCourse(new Course(12345, "CS", 3140, 1, "TR 14:00-15:15"));
+        courseDatabase.addEnrollments(List.of(new Enrollment(2, 12345), new Enrollment(1, 12345)));
+    }
+
+    @Test
+    void exportStudents_csv() throws IOException, SQLException {
+        StringWriter output = new StringWriter();
+
+        long rows = new ScheduleExporter(courseDatabase).exportStudents(output, ScheduleExporter.Format.CSV);
+
+        assertEquals(2, rows);
+        assertEquals("""
+                StudentId,FirstName,LastName,ComputingID
+                1,John,Doe,abc2def
+                2,,"O""Brien, Jr.",ghi3jkl
+                """, output.toString());
+    }
+
+    @Test
+    void exportStudents_ndjson() throws IOException, SQLException {
+        StringWriter output = new StringWriter();
+
+        new ScheduleExporter(courseDatabase).exportStudents(output, ScheduleExporter.Format.NDJSON);
+
+        assertEquals("""
+                {"StudentId":1,"FirstName":"John","LastName":"Doe","ComputingID":"abc2def"}
+                {"StudentId":2,"FirstName":null,"LastName":"O\\"Brien, Jr.","ComputingID":"ghi3jkl"}
+                """, output.toString());
+    }
+
+    @Test
+    void exportEnrollments_sortedByStudent() throws IOException, SQLException {
+        StringWriter output = new StringWriter();
+
+        long rows = new ScheduleExporter(courseDatabase).exportEnrollments(output, ScheduleExporter.Format.CSV);
+
+        assertEquals(2, rows);
+        assertEquals("""
+                StudentID,CRN
+                1,12345
+                2,12345
+                """, output.toString());
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        courseDatabase.dropTables();
+        courseDatabase.commit();
+        courseDatabase.disconnect();
+    }
+}
@@ -0,0 +1,18 @@
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringCountMapTest {
+    @Test
+    void build_sortsKeysWithNullFirst() {
+        StringCountMap counts = StringCountMap.builder().add("MATH", 4).add(null, 1).add("CS", 2).build();
+
+        assertEquals("{null=1, CS=2, MATH=4}", counts.toString());
+        assertEquals(4, counts.get("MATH"));
+        assertEquals(1, counts.get(null));
+        assertEquals(0, counts.get("STS"));
+        assertEquals(7, counts.total());
+        assertThrows(IllegalArgumentException.class, () -> StringCountMap.builder().add("CS", 1).add("CS", 2).build());
+        assertSame(StringCountMap.EMPTY, StringCountMap.builder().build());
+    }
+}